@@ -0,0 +1,144 @@
+package code;
+
+import java.util.Arrays;
+
+// Dial's queue: keys are non-negative integers popped in non-decreasing order and no queued key
+// is ever more than span() past the last popped one, so a ring of span() + 1 buckets holding
+// intrusive doubly-linked lists gives O(1) push, decrease-key and amortized pop.
+final class BucketQueue implements IdQueue {
+
+    private final long[] keys;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;
+    private int[] heads;
+    private long cursor = -1;
+    private long maxKey = -1;
+    private boolean popped;
+    private int size;
+
+    BucketQueue(int capacity, int span) {
+        this.keys = new long[capacity];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.bucketOf = new int[capacity];
+        this.heads = new int[span + 1];
+        Arrays.fill(bucketOf, -1);
+        Arrays.fill(heads, -1);
+    }
+
+    int span() {
+        return heads.length - 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return bucketOf[id] >= 0;
+    }
+
+    @Override
+    public double key(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public void push(int id, double key) {
+        long k = (long) key;
+        // Until the first pop (e.g. while seeding several roots) the minimum may still move down.
+        if (cursor < 0 || (!popped && k < cursor)) {
+            cursor = k;
+        } else if (k < cursor) {
+            throw new IllegalStateException("Key " + k + " below last popped key " + cursor + "; heuristic is not consistent");
+        }
+        maxKey = Math.max(maxKey, k);
+        if (maxKey - cursor >= heads.length) {
+            grow(maxKey - cursor + 1);
+        }
+        keys[id] = k;
+        link(id, (int) (k % heads.length));
+        size++;
+    }
+
+    @Override
+    public void decreaseKey(int id, double key) {
+        unlink(id);
+        size--;
+        push(id, key);
+    }
+
+    @Override
+    public int pop() {
+        int bucket = (int) (cursor % heads.length);
+        while (heads[bucket] < 0) {
+            cursor++;
+            bucket = bucket + 1 == heads.length ? 0 : bucket + 1;
+        }
+        int id = heads[bucket];
+        unlink(id);
+        size--;
+        popped = true;
+        return id;
+    }
+
+    @Override
+    public void clear() {
+        for (int bucket = 0; bucket < heads.length && size > 0; bucket++) {
+            for (int id = heads[bucket]; id >= 0; id = next[id]) {
+                bucketOf[id] = -1;
+                size--;
+            }
+            heads[bucket] = -1;
+        }
+        cursor = -1;
+        maxKey = -1;
+        popped = false;
+        size = 0;
+    }
+
+    // Only hit when a caller underestimated the span; re-buckets everything into a wider ring.
+    private void grow(long needed) {
+        int[] old = heads;
+        heads = new int[(int) Math.max(needed, 2L * old.length)];
+        Arrays.fill(heads, -1);
+        for (int head : old) {
+            for (int id = head, following; id >= 0; id = following) {
+                following = next[id];
+                link(id, (int) (keys[id] % heads.length));
+            }
+        }
+    }
+
+    private void link(int id, int bucket) {
+        int head = heads[bucket];
+        next[id] = head;
+        prev[id] = -1;
+        if (head >= 0) {
+            prev[head] = id;
+        }
+        heads[bucket] = id;
+        bucketOf[id] = bucket;
+    }
+
+    private void unlink(int id) {
+        int bucket = bucketOf[id];
+        if (prev[id] >= 0) {
+            next[prev[id]] = next[id];
+        } else {
+            heads[bucket] = next[id];
+        }
+        if (next[id] >= 0) {
+            prev[next[id]] = prev[id];
+        }
+        bucketOf[id] = -1;
+    }
+}
@@ -0,0 +1,408 @@
+package code;
+
+import java.util.Arrays;
+
+// Contraction hierarchy over a GridGraph, built once per graph and then queried with two upward
+// Dijkstra searches. Roads can cost differently each way, so arcs stay directed throughout.
+// Every arc remembers how to turn back into grid moves: an original edge keeps its action, a
+// shortcut keeps the cell it bypasses.
+final class ContractionHierarchy {
+
+    // Witness searches give up after settling this many cells; a missed witness only costs an
+    // extra shortcut, never a wrong answer. Priority estimates use a tighter bound.
+    private static final int WITNESS_SETTLE_LIMIT = 64;
+    private static final int ESTIMATE_SETTLE_LIMIT = 12;
+
+    private final GridGraph graph;
+    private final int[] rank;
+    // Upward arcs out of each cell (to higher rank), and upward arcs into it read backwards:
+    // downTargets[i] = u means the arc u -> cell, with rank[u] > rank[cell].
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upCosts;
+    private final int[] upVia;
+    private final int[] downOffsets;
+    private final int[] downTargets;
+    private final int[] downCosts;
+    private final int[] downVia;
+
+    private ContractionHierarchy(GridGraph graph, int[] rank, Arcs[] up, Arcs[] down) {
+        this.graph = graph;
+        this.rank = rank;
+        int cells = rank.length;
+        upOffsets = new int[cells + 1];
+        downOffsets = new int[cells + 1];
+        for (int cell = 0; cell < cells; cell++) {
+            upOffsets[cell + 1] = upOffsets[cell] + up[cell].size;
+            downOffsets[cell + 1] = downOffsets[cell] + down[cell].size;
+        }
+        upTargets = new int[upOffsets[cells]];
+        upCosts = new int[upOffsets[cells]];
+        upVia = new int[upOffsets[cells]];
+        downTargets = new int[downOffsets[cells]];
+        downCosts = new int[downOffsets[cells]];
+        downVia = new int[downOffsets[cells]];
+        for (int cell = 0; cell < cells; cell++) {
+            up[cell].copyTo(upTargets, upCosts, upVia, upOffsets[cell]);
+            down[cell].copyTo(downTargets, downCosts, downVia, downOffsets[cell]);
+        }
+    }
+
+    static ContractionHierarchy build(GridGraph graph) {
+        return new Builder(graph).contract();
+    }
+
+    // Rough heap bytes held by the arrays.
+    long footprint() {
+        return 4L * (rank.length + upOffsets.length + downOffsets.length) + 12L * (upTargets.length + downTargets.length);
+    }
+
+    // "plan;cost;expanded" like the other strategies; expanded counts both upward searches.
+    // Queues and labels come from the caller's workspace and its partner, so the hierarchy
+    // itself is never written after build() and can be queried from any number of threads.
+    // Paths costing more than costBound are not looked for.
+    String search(SearchWorkspace ws, int start, int goal, int costBound) {
+        if (start == goal) {
+            return ";0;0";
+        }
+        SearchWorkspace partner = ws.partner();
+        SearchLabels forward = ws.labels();
+        SearchLabels backward = partner.labels();
+        IndexedMinHeap forwardQueue = ws.heap();
+        IndexedMinHeap backwardQueue = partner.heap();
+        forward.set(start, 0, 0, -1, NodePool.NO_ACTION);
+        backward.set(goal, 0, 0, -1, NodePool.NO_ACTION);
+        forwardQueue.push(start, 0);
+        backwardQueue.push(goal, 0);
+        long best = (long) costBound + 1;
+        int meet = -1;
+        int expanded = 0;
+
+        try {
+            // Each side stops once its cheapest queued label can no longer beat the best meeting.
+            while (!forwardQueue.isEmpty() || !backwardQueue.isEmpty()) {
+                boolean ahead = backwardQueue.isEmpty()
+                        || (!forwardQueue.isEmpty() && forwardQueue.size() <= backwardQueue.size());
+                IdQueue queue = ahead ? forwardQueue : backwardQueue;
+                SearchLabels own = ahead ? forward : backward;
+                SearchLabels other = ahead ? backward : forward;
+                int[] offsets = ahead ? upOffsets : downOffsets;
+                int[] targets = ahead ? upTargets : downTargets;
+                int[] costs = ahead ? upCosts : downCosts;
+
+                int cell = queue.pop();
+                int cost = own.cost(cell);
+                if (cost >= best) {
+                    queue.clear();
+                    continue;
+                }
+                own.settle(cell);
+                expanded++;
+                if (other.settled(cell) && (long) cost + other.cost(cell) < best) {
+                    best = (long) cost + other.cost(cell);
+                    meet = cell;
+                }
+
+                for (int arc = offsets[cell]; arc < offsets[cell + 1]; arc++) {
+                    int next = targets[arc];
+                    int pathCost = cost + costs[arc];
+                    if (own.settled(next)) {
+                        continue;
+                    }
+                    if (!own.reached(next)) {
+                        queue.push(next, pathCost);
+                    } else if (pathCost < own.cost(next)) {
+                        queue.decreaseKey(next, pathCost);
+                    } else {
+                        continue;
+                    }
+                    own.set(next, pathCost, own.depth(cell) + 1, cell, NodePool.NO_ACTION);
+                    if (other.reached(next) && (long) pathCost + other.cost(next) < best) {
+                        best = (long) pathCost + other.cost(next);
+                        meet = next;
+                    }
+                }
+            }
+        } finally {
+            forwardQueue.clear();
+            backwardQueue.clear();
+        }
+
+        if (meet < 0) {
+            return "NoPath;0;" + expanded;
+        }
+        StringBuilder plan = new StringBuilder();
+        int[] chain = new int[forward.depth(meet) + 1];
+        for (int i = chain.length - 1, cell = meet; i >= 0; i--, cell = forward.link(cell)) {
+            chain[i] = cell;
+        }
+        for (int i = 1; i < chain.length; i++) {
+            unpack(chain[i - 1], chain[i], plan);
+        }
+        for (int cell = meet; cell != goal; cell = backward.link(cell)) {
+            unpack(cell, backward.link(cell), plan);
+        }
+        return plan + ";" + best + ";" + expanded;
+    }
+
+    // Appends the grid moves behind arc from -> to, expanding shortcuts recursively.
+    private void unpack(int from, int to, StringBuilder plan) {
+        int via = rank[from] < rank[to] ? viaOf(upOffsets, upTargets, upCosts, upVia, from, to)
+                : viaOf(downOffsets, downTargets, downCosts, downVia, to, from);
+        if (via >= 0) {
+            unpack(from, via, plan);
+            unpack(via, to, plan);
+            return;
+        }
+        if (plan.length() > 0) {
+            plan.append(",");
+        }
+        plan.append(GridGraph.ACTIONS[-via - 1]);
+    }
+
+    private static int viaOf(int[] offsets, int[] targets, int[] costs, int[] via, int cell, int other) {
+        for (int arc = offsets[cell]; arc < offsets[cell + 1]; arc++) {
+            if (targets[arc] == other) {
+                return via[arc];
+            }
+        }
+        throw new IllegalStateException("No arc between " + cell + " and " + other);
+    }
+
+    // Growable arc list; via >= 0 is the bypassed cell of a shortcut, otherwise -(action + 1).
+    private static final class Arcs {
+        int[] targets = new int[4];
+        int[] costs = new int[4];
+        int[] via = new int[4];
+        int size;
+
+        int indexOf(int target) {
+            for (int i = 0; i < size; i++) {
+                if (targets[i] == target) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Keeps one arc per target, the cheapest.
+        boolean offer(int target, int cost, int through) {
+            int i = indexOf(target);
+            if (i >= 0) {
+                if (cost >= costs[i]) {
+                    return false;
+                }
+                costs[i] = cost;
+                via[i] = through;
+                return true;
+            }
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+                via = Arrays.copyOf(via, size * 2);
+            }
+            targets[size] = target;
+            costs[size] = cost;
+            via[size] = through;
+            size++;
+            return true;
+        }
+
+        void remove(int target) {
+            int i = indexOf(target);
+            if (i >= 0) {
+                size--;
+                targets[i] = targets[size];
+                costs[i] = costs[size];
+                via[i] = via[size];
+            }
+        }
+
+        void copyTo(int[] targetsOut, int[] costsOut, int[] viaOut, int offset) {
+            System.arraycopy(targets, 0, targetsOut, offset, size);
+            System.arraycopy(costs, 0, costsOut, offset, size);
+            System.arraycopy(via, 0, viaOut, offset, size);
+        }
+    }
+
+    private static final class Builder {
+        private final GridGraph graph;
+        private final int cells;
+        // Arcs among cells not contracted yet, kept in both directions.
+        private final Arcs[] out;
+        private final Arcs[] in;
+        private final Arcs[] up;
+        private final Arcs[] down;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+        private final IndexedMinHeap order;
+        // Witness search scratch, stamped so each search starts clean for free.
+        private final IndexedMinHeap witnessQueue;
+        private final int[] witnessCost;
+        private final int[] witnessStamp;
+        private final int[] targetStamp;
+        private int stamp;
+
+        Builder(GridGraph graph) {
+            this.graph = graph;
+            this.cells = graph.cellCount();
+            this.out = new Arcs[cells];
+            this.in = new Arcs[cells];
+            this.up = new Arcs[cells];
+            this.down = new Arcs[cells];
+            for (int cell = 0; cell < cells; cell++) {
+                out[cell] = new Arcs();
+                in[cell] = new Arcs();
+            }
+            this.contracted = new boolean[cells];
+            this.contractedNeighbours = new int[cells];
+            this.order = new IndexedMinHeap(cells);
+            this.witnessQueue = new IndexedMinHeap(cells);
+            this.witnessCost = new int[cells];
+            this.witnessStamp = new int[cells];
+            this.targetStamp = new int[cells];
+        }
+
+        ContractionHierarchy contract() {
+            for (int cell = 0; cell < cells; cell++) {
+                for (int edge = graph.begin(cell), end = graph.end(cell); edge < end; edge++) {
+                    int target = graph.target(edge);
+                    int via = -graph.action(edge) - 1;
+                    if (target != cell && out[cell].offer(target, graph.cost(edge), via)) {
+                        in[target].offer(cell, graph.cost(edge), via);
+                    }
+                }
+            }
+            for (int cell = 0; cell < cells; cell++) {
+                order.push(cell, priority(cell));
+            }
+
+            int[] rank = new int[cells];
+            int next = 0;
+            // Lazy updates: a cell whose priority got worse since it was queued goes back in.
+            while (!order.isEmpty()) {
+                int cell = order.pop();
+                double queued = order.key(cell);
+                double current = priority(cell);
+                if (current > queued && !order.isEmpty()) {
+                    order.push(cell, current);
+                    continue;
+                }
+                rank[cell] = next++;
+                contractCell(cell, false);
+            }
+            return new ContractionHierarchy(graph, rank, up, down);
+        }
+
+        // Edge difference (weighted double) plus how many neighbours are already gone, which spreads
+        // contraction evenly over the grid.
+        private double priority(int cell) {
+            int shortcuts = contractCell(cell, true);
+            return 2 * (shortcuts - out[cell].size - in[cell].size) + contractedNeighbours[cell];
+        }
+
+        // Adds (or, when simulating, counts) the shortcuts needed to take cell out of the graph.
+        private int contractCell(int cell, boolean simulate) {
+            Arcs outs = out[cell];
+            Arcs ins = in[cell];
+            int maxOut = 0;
+            for (int i = 0; i < outs.size; i++) {
+                maxOut = Math.max(maxOut, outs.costs[i]);
+            }
+            int shortcuts = 0;
+            for (int i = 0; i < ins.size; i++) {
+                int from = ins.targets[i];
+                int toCell = ins.costs[i];
+                witnessSearch(from, cell, toCell + maxOut, outs, simulate ? ESTIMATE_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT);
+                for (int j = 0; j < outs.size; j++) {
+                    int to = outs.targets[j];
+                    if (to == from) {
+                        continue;
+                    }
+                    int cost = toCell + outs.costs[j];
+                    if (witnessStamp[to] == stamp && witnessCost[to] <= cost) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (!simulate && out[from].offer(to, cost, cell)) {
+                        in[to].offer(from, cost, cell);
+                    }
+                }
+            }
+            if (simulate) {
+                return shortcuts;
+            }
+
+            contracted[cell] = true;
+            up[cell] = copyOf(outs);
+            down[cell] = copyOf(ins);
+            for (int i = 0; i < outs.size; i++) {
+                in[outs.targets[i]].remove(cell);
+                contractedNeighbours[outs.targets[i]]++;
+            }
+            for (int i = 0; i < ins.size; i++) {
+                out[ins.targets[i]].remove(cell);
+                contractedNeighbours[ins.targets[i]]++;
+            }
+            out[cell] = null;
+            in[cell] = null;
+            return shortcuts;
+        }
+
+        // Bounded Dijkstra from source over the remaining graph, skipping the cell being contracted.
+        // Ends early once every target has been settled.
+        private void witnessSearch(int source, int skip, int limit, Arcs targets, int settleLimit) {
+            stamp++;
+            int pending = 0;
+            for (int i = 0; i < targets.size; i++) {
+                if (targetStamp[targets.targets[i]] != stamp) {
+                    targetStamp[targets.targets[i]] = stamp;
+                    pending++;
+                }
+            }
+            witnessStamp[source] = stamp;
+            witnessCost[source] = 0;
+            witnessQueue.push(source, 0);
+            int settled = 0;
+            while (!witnessQueue.isEmpty() && settled < settleLimit && pending > 0) {
+                int cell = witnessQueue.pop();
+                int cost = witnessCost[cell];
+                if (cost > limit) {
+                    break;
+                }
+                if (targetStamp[cell] == stamp) {
+                    pending--;
+                }
+                settled++;
+                Arcs arcs = out[cell];
+                for (int i = 0; i < arcs.size; i++) {
+                    int next = arcs.targets[i];
+                    if (next == skip) {
+                        continue;
+                    }
+                    int pathCost = cost + arcs.costs[i];
+                    if (witnessStamp[next] != stamp) {
+                        witnessStamp[next] = stamp;
+                        witnessCost[next] = pathCost;
+                        witnessQueue.push(next, pathCost);
+                    } else if (pathCost < witnessCost[next]) {
+                        witnessCost[next] = pathCost;
+                        if (witnessQueue.contains(next)) {
+                            witnessQueue.decreaseKey(next, pathCost);
+                        }
+                    }
+                }
+            }
+            witnessQueue.clear();
+        }
+
+        private static Arcs copyOf(Arcs arcs) {
+            Arcs copy = new Arcs();
+            copy.targets = Arrays.copyOf(arcs.targets, arcs.size);
+            copy.costs = Arrays.copyOf(arcs.costs, arcs.size);
+            copy.via = Arrays.copyOf(arcs.via, arcs.size);
+            copy.size = arcs.size;
+            return copy;
+        }
+    }
+}
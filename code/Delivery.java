@@ -0,0 +1,40 @@
+package code;
+
+// One routed customer: which store serves it and how. Stores and customers are 0-based positions
+// in the lists they came from; store is -1 when no store can reach the customer.
+public final class Delivery {
+
+    public final int store;
+    public final int customer;
+    public final String plan;
+    public final int cost;
+    public final int expanded;
+
+    Delivery(int store, int customer, String plan, int cost, int expanded) {
+        this.store = store;
+        this.customer = customer;
+        this.plan = plan;
+        this.cost = cost;
+        this.expanded = expanded;
+    }
+
+    // result is a search answer in the "plan;cost;expanded" form.
+    static Delivery of(int store, int customer, String result) {
+        if (store < 0 || result == null) {
+            return new Delivery(-1, customer, "NoPath", 0, 0);
+        }
+        String[] parts = result.split(";", -1);
+        return new Delivery(store, customer, parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+    }
+
+    public boolean delivered() {
+        return store >= 0;
+    }
+
+    // Same line solve() prints for this customer.
+    @Override
+    public String toString() {
+        String route = delivered() ? "(S" + (store + 1) : "(S?";
+        return route + ",D" + (customer + 1) + "):" + plan + ";" + cost + ";" + expanded;
+    }
+}
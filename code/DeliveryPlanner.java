@@ -1,5 +1,10 @@
 package code;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
 public class DeliveryPlanner {
 
     // Tiny wrapper so we punt all the heavy lifting to DeliverySearch.solve()
@@ -8,6 +13,36 @@ public class DeliveryPlanner {
         return DeliverySearch.solve(initialState, traffic, strategy, visualize);
     }
 
+    // Binary snapshots: convert() once from the text form, then solve straight from the mapped file.
+    public static void convert(String initialState, String traffic, Path gridFile) throws IOException {
+        DeliverySearch.convert(initialState, traffic, gridFile);
+    }
+
+    public static String solve(Path gridFile, String strategy, boolean visualize) throws IOException {
+        return DeliverySearch.solve(gridFile, strategy, visualize);
+    }
+
+    // Hands each delivery to onDelivery as soon as it is planned instead of one String at the end.
+    public static void solve(String initialState, String traffic, String strategy, Consumer<Delivery> onDelivery) {
+        DeliverySearch.solve(initialState, traffic, strategy, false, onDelivery);
+    }
+
+    // Keeps the routes alive so traffic deltas repair them instead of solving again.
+    public static IncrementalPlanner incremental(String initialState, String traffic) {
+        return DeliverySearch.incremental(initialState, traffic);
+    }
+
+    // Many jobs on one m x n map (tunnels as x1,y1,x2,y2,... and the usual traffic string),
+    // compiled once; one list of deliveries per query, in query order.
+    public static List<List<Delivery>> solveBatch(int m, int n, String tunnels, String traffic, List<DeliveryQuery> queries) {
+        return DeliverySearch.solveBatch(m, n, tunnels, traffic, queries);
+    }
+
+    // Same map arguments as solveBatch(), but traffic can be published while queries run.
+    public static LiveTraffic live(int m, int n, String tunnels, String traffic) {
+        return DeliverySearch.live(m, n, tunnels, traffic);
+    }
+
     public static void main(String[] args) {
         // run using the newer m;n;P;S;Stores;Customers;Tunnels layout
         // Grid: 5x5
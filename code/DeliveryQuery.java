@@ -0,0 +1,19 @@
+package code;
+
+// One batch job for DeliveryPlanner.solveBatch(): stores and customers are flat x,y pairs in the
+// same order as the Stores and Customers fields of the text format, and every customer is routed.
+public final class DeliveryQuery {
+
+    final int[] stores;
+    final int[] customers;
+    final String strategy;
+
+    public DeliveryQuery(int[] stores, int[] customers, String strategy) {
+        if (stores.length % 2 != 0 || customers.length % 2 != 0) {
+            throw new IllegalArgumentException("Stores and customers must be x,y pairs");
+        }
+        this.stores = stores.clone();
+        this.customers = customers.clone();
+        this.strategy = strategy;
+    }
+}
@@ -1,10 +1,19 @@
 package code;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public class DeliverySearch extends GenericSearch {
 
@@ -21,6 +30,10 @@ public class DeliverySearch extends GenericSearch {
             return Math.abs(x - other.x) + Math.abs(y - other.y);
         }
 
+        boolean onGrid(int m, int n) {
+            return x >= 0 && x < m && y >= 0 && y < n;
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj) {
@@ -36,7 +49,7 @@ public class DeliverySearch extends GenericSearch {
 
         @Override
         public int hashCode() {
-            return Objects.hash(x, y);
+            return 31 * x + y;
         }
 
         @Override
@@ -48,23 +61,154 @@ public class DeliverySearch extends GenericSearch {
 
 
 
+    // The three caches below share one weight limit, a quarter of the heap, so together they never
+    // hold more than that however the load is split between them.
+    private static final LruCache.Budget CACHE_BUDGET = new LruCache.Budget(Runtime.getRuntime().maxMemory() / 4);
+    // Compiled inputs keyed by a fingerprint of (initialState, traffic), or of a grid file's path and
+    // timestamp; repeat queries skip parsing.
+    private static final LruCache<Fingerprint, GridModel> GRID_CACHE =
+            new LruCache<>(64, CACHE_BUDGET, model -> model.footprint());
+    // Compiled graphs keyed by just the road network, so requests that only differ in stores or
+    // customers (and every batch query) share one graph and whatever it has built lazily. A graph
+    // is weighed again each time it builds something (reverse graph, hierarchy, landmarks, ...).
+    private static final LruCache<Fingerprint, GridGraph> GRAPH_CACHE =
+            new LruCache<>(16, CACHE_BUDGET, GridGraph::footprint);
+    // Per-store UC trees keyed by (grid + tunnels + traffic, store cell): new customers still hit,
+    // a traffic change misses and rebuilds.
+    private static final LruCache<TreeKey, SearchTree> TREE_CACHE =
+            new LruCache<>(256, CACHE_BUDGET, SearchTree::footprint);
+
+    // Around 4000x4000: past this the CSR arrays would take most of a default heap.
+    private static final int OFF_HEAP_CELLS = 1 << 24;
+
     private final int m;
     private final int n;
-    private final Map<String, Integer> trafficMap;
-    private final Map<State, State> tunnels;
+    private final GridGraph graph;
     private final int heuristicType;
-    private State target;
+    private final Landmarks landmarks;
+    // The target is fixed per instance, so one compiled graph can be searched from many threads
+    // at once, each with its own DeliverySearch; search scratch lives in per-thread workspaces.
+    private final State target;
+    private final int targetCell;
+    // Heuristic type 4 needs the relaxed cost from each tunnel end to this target.
+    private final PortalHeuristic portals;
+    private final int[] portalCosts;
+
+    DeliverySearch(GridGraph graph, int heuristicType) {
+        this(graph, heuristicType, null);
+    }
 
-    public DeliverySearch(int m, int n, Map<String, Integer> trafficMap, Map<State, State> tunnels, int heuristicType) {
-        this.m = m;
-        this.n = n;
-        this.trafficMap = trafficMap;
-        this.tunnels = tunnels;
+    private DeliverySearch(GridGraph graph, int heuristicType, State target) {
+        this.m = graph.m;
+        this.n = graph.n;
+        this.graph = graph;
         this.heuristicType = heuristicType;
+        this.landmarks = heuristicType == 3 ? graph.landmarks() : null;
+        this.target = target;
+        this.targetCell = target == null ? -1 : graph.cell(target.x, target.y);
+        this.portals = heuristicType == 4 && target != null ? graph.portals() : null;
+        this.portalCosts = portals != null ? portals.portalCosts(targetCell) : null;
     }
 
-    public void setTarget(State target) {
-        this.target = target;
+    // Same grid and heuristic, aimed at target.
+    DeliverySearch withTarget(State target) {
+        return new DeliverySearch(graph, heuristicType, target);
+    }
+
+    // Cells are numbered x * n + y so the search can keep its closed set in a bitset.
+    @Override
+    protected int stateCount() {
+        return m * n;
+    }
+
+    @Override
+    protected int encode(Object state) {
+        State cell = (State) state;
+        return cell.x * n + cell.y;
+    }
+
+    @Override
+    protected int maxEdgeCost() {
+        return graph.maxCost();
+    }
+
+    // Manhattan is integral; Euclidean is not, so AS2/GR2 stay on the comparison heap.
+    @Override
+    protected boolean hasIntegralHeuristic() {
+        return heuristicType != 2;
+    }
+
+    @Override
+    protected boolean isEncodedGoal(int cell) {
+        return cell == targetCell;
+    }
+
+    @Override
+    protected double encodedHeuristic(int cell) {
+        if (heuristicType == 1) {
+            return Math.abs(cell / n - target.x) + Math.abs(cell % n - target.y);
+        }
+        if (heuristicType == 2) {
+            int dx = cell / n - target.x;
+            int dy = cell % n - target.y;
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+        if (heuristicType == 3) {
+            return landmarkBound(cell);
+        }
+        if (heuristicType == 4) {
+            return portals.estimate(cell, targetCell, portalCosts);
+        }
+        return 0;
+    }
+
+    // ALT: the best landmark triangle bound, never below Manhattan (the max of consistent
+    // heuristics stays consistent). Infinite when a landmark proves the target unreachable.
+    private double landmarkBound(int cell) {
+        int bound = landmarks.estimate(cell, targetCell);
+        if (bound == Landmarks.UNREACHABLE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.max(bound, Math.abs(cell / n - target.x) + Math.abs(cell % n - target.y));
+    }
+
+    @Override
+    protected void expandEncoded(int cell, Successors out) {
+        for (int edge = graph.begin(cell), end = graph.end(cell); edge < end; edge++) {
+            out.add(graph.target(edge), graph.cost(edge), graph.action(edge));
+        }
+    }
+
+    @Override
+    protected int encodedGoal() {
+        return targetCell;
+    }
+
+    // Roads can cost differently each way and tunnels can be one-way, so the backward side of
+    // BBF/BUC walks the transposed graph rather than assuming every edge has a twin.
+    @Override
+    protected void expandEncodedReverse(int cell, Successors out) {
+        GridGraph reversed = graph.reversed();
+        for (int edge = reversed.begin(cell), end = reversed.end(cell); edge < end; edge++) {
+            out.add(reversed.target(edge), reversed.cost(edge), reversed.action(edge));
+        }
+    }
+
+    @Override
+    protected String operatorName(byte action) {
+        return GridGraph.ACTIONS[action];
+    }
+
+    // JPS and CH are grid-specific, so they are answered here rather than by GenericSearch.
+    @Override
+    public String search(Object initialState, String strategy, int costBound) {
+        if ("JPS".equals(strategy)) {
+            return new JumpPointSearch(graph, targetCell).search(workspace(), encode(initialState), costBound);
+        }
+        if ("CH".equals(strategy)) {
+            return graph.hierarchy().search(workspace(), encode(initialState), targetCell, costBound);
+        }
+        return super.search(initialState, strategy, costBound);
     }
 
     @Override
@@ -86,6 +230,12 @@ public class DeliverySearch extends GenericSearch {
             int dy = current.y - target.y;
             return Math.sqrt(dx * dx + dy * dy);
         }
+        if (heuristicType == 3) {
+            return landmarkBound(encode(current));
+        }
+        if (heuristicType == 4) {
+            return portals.estimate(encode(current), targetCell, portalCosts);
+        }
         return 0;
     }
 
@@ -93,101 +243,408 @@ public class DeliverySearch extends GenericSearch {
     public List<Node> expand(Node node) {
         List<Node> children = new ArrayList<>();
         State current = (State) node.state;
+        int cell = graph.cell(current.x, current.y);
+
+        // Edges come out of the compiled graph already in up, down, left, right, tunnel order.
+        for (int edge = graph.begin(cell), end = graph.end(cell); edge < end; edge++) {
+            int next = graph.target(edge);
+            State nextState = new State(next / n, next % n);
+            children.add(new Node(nextState, node, GridGraph.ACTIONS[graph.action(edge)], node.depth + 1,
+                    node.pathCost + graph.cost(edge), 0));
+        }
+
+        return children;
+    }
+
+    public static String solve(String initialState, String traffic, String strategy, boolean visualize) {
+        return solve(initialState, traffic, strategy, visualize, false);
+    }
 
-        int[][] directions = {{0, 1}, {0, -1}, {-1, 0}, {1, 0}};
-        String[] actions = {"up", "down", "left", "right"};
+    // parallel fans the independent searches (per customer, or per store for UC/BF/DF) out over the
+    // common ForkJoinPool; results are merged in the same order, so the output is identical.
+    public static String solve(String initialState, String traffic, String strategy, boolean visualize, boolean parallel) {
+        return format(solve(initialState, traffic, strategy, parallel, delivery -> { }), visualize);
+    }
 
-        for (int i = 0; i < directions.length; i++) {
-            int nx = current.x + directions[i][0];
-            int ny = current.y + directions[i][1];
+    // Same as solve() but reads the map, stores and customers from a file written by convert().
+    // Files past OFF_HEAP_CELLS keep their road costs off-heap in the mapped file.
+    public static String solve(Path gridFile, String strategy, boolean visualize) throws IOException {
+        return solve(gridFile, strategy, visualize, Files.size(gridFile) >= 4L * OFF_HEAP_CELLS);
+    }
 
-            if (nx >= 0 && nx < m && ny >= 0 && ny < n) {
-                int cost = getTrafficCost(current.x, current.y, nx, ny);
-                if (cost > 0) {
-                    State nextState = new State(nx, ny);
-                    children.add(new Node(nextState, node, actions[i], node.depth + 1, node.pathCost + cost, 0));
+    // The model is cached against the file's path, size and modification time.
+    public static String solve(Path gridFile, String strategy, boolean visualize, boolean offHeap) throws IOException {
+        Path path = gridFile.toAbsolutePath();
+        Fingerprint key = Fingerprint.of(offHeap ? "mapped" : "file", path.toString(), String.valueOf(Files.size(path)),
+                Files.getLastModifiedTime(path).toString());
+        GridModel model;
+        try {
+            model = GRID_CACHE.get(key, () -> {
+                try {
+                    GridModel loaded = load(GridFile.read(path, offHeap), key);
+                    loaded.graph.onGrow(() -> GRID_CACHE.reweigh(key));
+                    return loaded;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        ParsedInput input = model.input;
+        int deliveries = Math.min(input.customers.size(), input.packageCount);
+        return format(route(model.graph, cachedTrees(model.gridKey), input.stores, input.customers.subList(0, deliveries), strategy, false,
+                delivery -> { }), visualize);
+    }
+
+    // Writes the binary form of a text snapshot for solve(Path, ...); see GridFile for the layout.
+    public static void convert(String initialState, String traffic, Path gridFile) throws IOException {
+        GridModel model = model(initialState, traffic);
+        ParsedInput input = model.input;
+        GridFile.write(gridFile, input.packageCount, input.storeCount, coords(input.stores), coords(input.customers), graph(model, traffic));
+    }
 
-        if (tunnels.containsKey(current)) {
-            State exit = tunnels.get(current);
-            int tunnelCost = current.manhattan(exit);
-            children.add(new Node(exit, node, "tunnel", node.depth + 1, node.pathCost + tunnelCost, 0));
+    private static GridModel load(GridFile file, Fingerprint gridKey) {
+        Map<State, State> tunnels = new HashMap<>();
+        for (int i = 0; i < file.tunnels.length; i += 4) {
+            tunnels.put(new State(file.tunnels[i], file.tunnels[i + 1]), new State(file.tunnels[i + 2], file.tunnels[i + 3]));
         }
+        List<State> customers = cells(file.customers);
+        List<State> stores = cells(file.stores);
+        ParsedInput parsed = new ParsedInput(file.m, file.n, file.packageCount, file.storeCount, customers, stores, tunnels, "");
+        return new GridModel(parsed, file.graph, gridKey);
+    }
 
-        return children;
+    private static int[] coords(List<State> cells) {
+        int[] coords = new int[2 * cells.size()];
+        for (int i = 0; i < cells.size(); i++) {
+            coords[2 * i] = cells.get(i).x;
+            coords[2 * i + 1] = cells.get(i).y;
+        }
+        return coords;
     }
 
-    private int getTrafficCost(int x1, int y1, int x2, int y2) {
-        String keyForward = x1 + "," + y1 + "," + x2 + "," + y2;
-        String keyBackward = x2 + "," + y2 + "," + x1 + "," + y1;
-        if (trafficMap.containsKey(keyForward)) {
-            return trafficMap.get(keyForward);
+    private static String format(Delivery[] routed, boolean visualize) {
+        StringBuilder output = new StringBuilder();
+        for (Delivery delivery : routed) {
+            if (output.length() > 0) {
+                output.append(System.lineSeparator());
+            }
+            output.append(delivery);
+            if (visualize && delivery.delivered()) {
+                System.out.println("Delivering from store " + (delivery.store + 1) + " to customer " + (delivery.customer + 1)
+                        + ": " + delivery.plan + ";" + delivery.cost + ";" + delivery.expanded);
+            }
         }
-        if (trafficMap.containsKey(keyBackward)) {
-            return trafficMap.get(keyBackward);
+
+        return output.toString();
+    }
+
+    // Streaming form of solve(): each delivery goes to sink as soon as its customer is routed, so
+    // dispatch can start before the last search ends. Sequential runs emit in customer order, UC
+    // after its store trees are built and BF/DF after every store's sweep; parallel runs emit in
+    // completion order. All deliveries are also returned in customer order.
+    public static Delivery[] solve(String initialState, String traffic, String strategy, boolean parallel, Consumer<Delivery> sink) {
+        GridModel model = model(initialState, traffic);
+        ParsedInput input = model.input;
+        int deliveries = Math.min(input.customers.size(), input.packageCount);
+        return route(graph(model, traffic), cachedTrees(model.gridKey), input.stores, input.customers.subList(0, deliveries), strategy, parallel,
+                sink);
+    }
+
+    // Text models leave the graph to GRAPH_CACHE, so it is weighed once and goes when that cache
+    // drops it rather than staying pinned by a model.
+    private static GridModel model(String initialState, String traffic) {
+        return GRID_CACHE.get(Fingerprint.of(initialState, traffic), () -> {
+            ParsedInput parsed = parseInitialState(initialState);
+            return new GridModel(parsed, null, Fingerprint.of(parsed.m + ";" + parsed.n, parsed.tunnelSpec, traffic));
+        });
+    }
+
+    private static GridGraph graph(GridModel model, String traffic) {
+        if (model.graph != null) {
+            return model.graph;
         }
-        return 1;
+        ParsedInput input = model.input;
+        return cachedGraph(model.gridKey, () -> compile(input.m, input.n, input.tunnels, traffic));
     }
 
-    public static String solve(String initialState, String traffic, String strategy, boolean visualize) {
+    // Route state that repairs itself on traffic deltas instead of solving again; see IncrementalPlanner.
+    public static IncrementalPlanner incremental(String initialState, String traffic) {
         ParsedInput input = parseInitialState(initialState);
-        Map<String, Integer> trafficMap = parseTraffic(traffic);
+        int deliveries = Math.min(input.customers.size(), input.packageCount);
+        return new IncrementalPlanner(input.m, input.n, coords(input.stores), coords(input.customers.subList(0, deliveries)),
+                builder(input.m, input.n, input.tunnels, traffic));
+    }
 
+    // Routes many store/customer sets over one map: the graph is compiled (or fetched) once, UC trees
+    // and per-thread workspaces carry over between queries, and each query only pays for its own
+    // searches. Queries run in parallel; results come back in query order.
+    public static List<List<Delivery>> solveBatch(int m, int n, String tunnels, String traffic, List<DeliveryQuery> queries) {
+        checkSize(m, n);
+        String tunnelSpec = tunnels == null ? "" : tunnels;
+        Fingerprint gridKey = Fingerprint.of(m + ";" + n, tunnelSpec, traffic);
+        GridGraph graph = cachedGraph(gridKey, () -> compile(m, n, scanTunnels(new GridScanner(tunnelSpec, "tunnels"), m, n), traffic));
+
+        Delivery[][] results = new Delivery[queries.size()][];
+        // Queries are the unit of work; a lone query spreads its own customers over the pool instead.
+        forEach(queries.size(), true, q -> {
+            DeliveryQuery query = queries.get(q);
+            results[q] = route(graph, cachedTrees(gridKey), cells(query.stores), cells(query.customers),
+                    query.strategy, queries.size() == 1, delivery -> { });
+        });
+        List<List<Delivery>> batch = new ArrayList<>(results.length);
+        for (Delivery[] deliveries : results) {
+            batch.add(List.of(deliveries));
+        }
+        return batch;
+    }
+
+    // A map whose traffic changes while searches run on it; see LiveTraffic.
+    public static LiveTraffic live(int m, int n, String tunnels, String traffic) {
+        checkSize(m, n);
+        Map<State, State> tunnelMap = scanTunnels(new GridScanner(tunnels == null ? "" : tunnels, "tunnels"), m, n);
+        int[] flat = new int[4 * tunnelMap.size()];
+        int i = 0;
+        for (Map.Entry<State, State> tunnel : tunnelMap.entrySet()) {
+            flat[i++] = tunnel.getKey().x;
+            flat[i++] = tunnel.getKey().y;
+            flat[i++] = tunnel.getValue().x;
+            flat[i++] = tunnel.getValue().y;
+        }
+        return new LiveTraffic(TrafficSnapshot.of(m, n, flat, traffic));
+    }
+
+    // One query on a pinned traffic version; its UC trees live and die with that version instead
+    // of filling TREE_CACHE with keys nobody will ask for again.
+    static List<Delivery> solve(TrafficSnapshot snapshot, DeliveryQuery query) {
+        GridGraph graph = snapshot.graph();
+        return List.of(route(graph, snapshot::tree, cells(query.stores), cells(query.customers), query.strategy, false,
+                delivery -> { }));
+    }
+
+    private static GridGraph cachedGraph(Fingerprint gridKey, Supplier<GridGraph> compile) {
+        return GRAPH_CACHE.get(gridKey, () -> {
+            GridGraph graph = compile.get();
+            graph.onGrow(() -> GRAPH_CACHE.reweigh(gridKey));
+            return graph;
+        });
+    }
+
+    private static TreeSource cachedTrees(Fingerprint gridKey) {
+        return (storeCell, search) -> TREE_CACHE.get(new TreeKey(gridKey, storeCell), search);
+    }
+
+    // Where route() gets per-store UC trees: the shared cache, or a live traffic version's own.
+    interface TreeSource {
+        SearchTree tree(int storeCell, Supplier<SearchTree> search);
+    }
+
+    // Picks the cheapest store for every target, one Delivery per target in target order. Cells off
+    // the grid have no id to search from: such a store never serves anyone and such a target gets
+    // NoPath straight away, while everyone else is routed as usual under their original numbers.
+    private static Delivery[] route(GridGraph graph, TreeSource treeSource, List<State> stores, List<State> targets,
+                                    String strategy, boolean parallel, Consumer<Delivery> sink) {
+        int[] storeIds = onGrid(graph, stores);
+        int[] targetIds = onGrid(graph, targets);
+        if (storeIds.length == stores.size() && targetIds.length == targets.size()) {
+            return routeOnGrid(graph, treeSource, stores, targets, strategy, parallel, sink);
+        }
+        Delivery[] routed = new Delivery[targets.size()];
+        for (int i = 0; i < routed.length; i++) {
+            if (!targets.get(i).onGrid(graph.m, graph.n)) {
+                routed[i] = Delivery.of(-1, i, null);
+                sink.accept(routed[i]);
+            }
+        }
+        List<State> usableStores = new ArrayList<>(storeIds.length);
+        for (int id : storeIds) {
+            usableStores.add(stores.get(id));
+        }
+        List<State> usableTargets = new ArrayList<>(targetIds.length);
+        for (int id : targetIds) {
+            usableTargets.add(targets.get(id));
+        }
+        Consumer<Delivery> renumber = delivery -> {
+            Delivery original = delivery.delivered()
+                    ? new Delivery(storeIds[delivery.store], targetIds[delivery.customer], delivery.plan, delivery.cost, delivery.expanded)
+                    : Delivery.of(-1, targetIds[delivery.customer], null);
+            routed[original.customer] = original;
+            sink.accept(original);
+        };
+        routeOnGrid(graph, treeSource, usableStores, usableTargets, strategy, parallel, renumber);
+        return routed;
+    }
+
+    // Positions in cells of the ones on the grid, in order.
+    private static int[] onGrid(GridGraph graph, List<State> cells) {
+        int[] ids = new int[cells.size()];
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (cells.get(i).onGrid(graph.m, graph.n)) {
+                ids[count++] = i;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static Delivery[] routeOnGrid(GridGraph graph, TreeSource treeSource, List<State> stores, List<State> targets,
+                                          String strategy, boolean parallel, Consumer<Delivery> sink) {
         int heuristicType = 0;
         if (strategy.endsWith("1")) {
             heuristicType = 1;
         } else if (strategy.endsWith("2")) {
             heuristicType = 2;
+        } else if (strategy.endsWith("3")) {
+            heuristicType = 3;
+        } else if (strategy.endsWith("4")) {
+            heuristicType = 4;
         }
 
-        DeliverySearch agent = new DeliverySearch(input.m, input.n, trafficMap, input.tunnels, heuristicType);
-
-        StringBuilder output = new StringBuilder();
-        int deliveries = Math.min(input.customers.size(), input.packageCount);
-
-        for (int i = 0; i < deliveries; i++) {
-            State customer = input.customers.get(i);
-            agent.setTarget(customer);
-
-            int bestCost = Integer.MAX_VALUE;
-            String bestResult = null;
-            int bestStoreIndex = -1;
-
-            // Try every store to fnd cheepest ride for this customer.
-            for (int storeIndex = 0; storeIndex < input.stores.size(); storeIndex++) {
-                State store = input.stores.get(storeIndex);
-                String result = agent.search(store, strategy);
-                String[] parts = result.split(";");
-                if (parts.length < 3 || "NoPath".equals(parts[0])) {
-                    continue;
+        DeliverySearch agent = new DeliverySearch(graph, heuristicType);
+        int deliveries = targets.size();
+        int[] bestStores = new int[deliveries];
+        String[] bestResults = new String[deliveries];
+        Arrays.fill(bestStores, -1);
+        // Each customer is handed to sink the moment its store is settled; parallel workers take
+        // turns so sink never runs concurrently with itself.
+        Delivery[] routed = new Delivery[deliveries];
+        IntConsumer finish = i -> {
+            Delivery delivery = Delivery.of(bestStores[i], i, bestResults[i]);
+            routed[i] = delivery;
+            synchronized (routed) {
+                sink.accept(delivery);
+            }
+        };
+
+        if ("UC".equals(strategy)) {
+            // A full UC tree per store depends only on grid + traffic, so it is cached across requests;
+            // customers are answered by cost lookups and only the winning store's path is unpacked.
+            SearchTree[] trees = new SearchTree[stores.size()];
+            int[] bestCosts = new int[deliveries];
+            forEach(stores.size(), parallel, storeIndex -> {
+                State store = stores.get(storeIndex);
+                trees[storeIndex] = treeSource.tree(graph.cell(store.x, store.y), () -> agent.searchTree(store, strategy));
+            });
+            for (int storeIndex = 0; storeIndex < stores.size(); storeIndex++) {
+                for (int i = 0; i < deliveries; i++) {
+                    int cost = trees[storeIndex].cost(graph.cell(targets.get(i).x, targets.get(i).y));
+                    if (cost >= 0 && (bestStores[i] == -1 || cost < bestCosts[i])) {
+                        bestStores[i] = storeIndex;
+                        bestCosts[i] = cost;
+                    }
                 }
-                int cost = Integer.parseInt(parts[1]);
-                if (cost < bestCost) {
-                    bestCost = cost;
-                    bestResult = result;
-                    bestStoreIndex = storeIndex;
+            }
+            for (int i = 0; i < deliveries; i++) {
+                if (bestStores[i] != -1) {
+                    bestResults[i] = agent.pathTo(trees[bestStores[i]], targets.get(i));
                 }
+                finish.accept(i);
             }
-
-            if (output.length() > 0) {
-                output.append(System.lineSeparator());
+        } else if (isSweepable(strategy)) {
+            // BF/DF don't look at the target while searching, so a single multi-goal run per
+            // store settles every customer with exactly the answer its own search would give.
+            String[][] sweeps = new String[stores.size()][];
+            forEach(stores.size(), parallel, storeIndex -> sweeps[storeIndex] = agent.searchAll(stores.get(storeIndex), targets, strategy));
+            for (int storeIndex = 0; storeIndex < stores.size(); storeIndex++) {
+                for (int i = 0; i < deliveries; i++) {
+                    offer(bestStores, bestResults, i, storeIndex, sweeps[storeIndex][i]);
+                }
             }
-
-            if (bestStoreIndex != -1 && bestResult != null) {
-                output.append("(S").append(bestStoreIndex + 1).append(",D").append(i + 1).append("):")
-                      .append(bestResult);
-                if (visualize) {
-                    System.out.println("Delivering from store " + (bestStoreIndex + 1) + " to customer " + (i + 1) + ": " + bestResult);
+            for (int i = 0; i < deliveries; i++) {
+                finish.accept(i);
+            }
+        } else if (isMultiSource(strategy)) {
+            // Every store seeds the frontier at cost 0, so one run per customer finds the cheapest store too.
+            forEach(deliveries, parallel, i -> {
+                DeliverySearch query = agent.withTarget(targets.get(i));
+                SourcedResult result = query.searchFromAny(stores, strategy);
+                if (result.source >= 0) {
+                    bestStores[i] = result.source;
+                    bestResults[i] = result.result;
+                }
+                // The run settles for whichever store reached the customer first, but a store listed
+                // earlier that ties on cost is the answer, as with every other strategy. Bounded by the
+                // winning cost, each of those searches either ties it or gives up early.
+                for (int storeIndex = 0; storeIndex < result.source; storeIndex++) {
+                    String tied = query.search(stores.get(storeIndex), strategy, costOf(result.result));
+                    if (!tied.startsWith("NoPath")) {
+                        bestStores[i] = storeIndex;
+                        bestResults[i] = tied;
+                        break;
+                    }
                 }
-            } else {
-                output.append("(S?,D").append(i + 1).append("):")
-                      .append("NoPath;0;0");
+                finish.accept(i);
+            });
+        } else {
+            forEach(deliveries, parallel, i -> {
+                State customer = targets.get(i);
+                DeliverySearch query = agent.withTarget(customer);
+                // Try every store to fnd cheepest ride for this customer, nearest first, each one
+                // bounded by the best ride so far so losing stores give up early. A store listed
+                // before the current best may still tie it, one listed after has to beat it.
+                Integer[] order = new Integer[stores.size()];
+                for (int storeIndex = 0; storeIndex < order.length; storeIndex++) {
+                    order[storeIndex] = storeIndex;
+                }
+                Arrays.sort(order, Comparator.comparingInt(storeIndex -> stores.get(storeIndex).manhattan(customer)));
+                for (int storeIndex : order) {
+                    int bound = UNBOUNDED;
+                    if (bestStores[i] != -1) {
+                        bound = costOf(bestResults[i]) - (storeIndex > bestStores[i] ? 1 : 0);
+                    }
+                    offer(bestStores, bestResults, i, storeIndex, query.search(stores.get(storeIndex), strategy, bound));
+                }
+                finish.accept(i);
+            });
+        }
+        return routed;
+    }
+
+    // Keeps result for customer i if it is a path and cheaper than what other stores gave; on a tie
+    // the store listed first wins, whatever order the stores were tried in.
+    private static void offer(int[] bestStores, String[] bestResults, int i, int storeIndex, String result) {
+        String[] parts = result.split(";");
+        if (parts.length < 3 || "NoPath".equals(parts[0])) {
+            return;
+        }
+        int cost = Integer.parseInt(parts[1]);
+        if (bestStores[i] == -1 || cost < costOf(bestResults[i])
+                || (cost == costOf(bestResults[i]) && storeIndex < bestStores[i])) {
+            bestStores[i] = storeIndex;
+            bestResults[i] = result;
+        }
+    }
+
+    private static int costOf(String result) {
+        return Integer.parseInt(result.split(";")[1]);
+    }
+
+    // Runs body for 0..count-1, on the common pool when parallel; callers only write slot i.
+    private static void forEach(int count, boolean parallel, IntConsumer body) {
+        if (parallel && count > 1) {
+            IntStream.range(0, count).parallel().forEach(body);
+        } else {
+            for (int i = 0; i < count; i++) {
+                body.accept(i);
             }
         }
+    }
 
-        return output.toString();
+    private static boolean isMultiSource(String strategy) {
+        return strategy.startsWith("GR") || strategy.startsWith("AS");
+    }
+
+    private static boolean isSweepable(String strategy) {
+        return "BF".equals(strategy) || "DF".equals(strategy);
+    }
+
+    public static LruCache<?, ?> gridCache() {
+        return GRID_CACHE;
+    }
+
+    public static LruCache<?, ?> distanceTableCache() {
+        return TREE_CACHE;
     }
 
     public static String GenGrid() {
@@ -196,27 +653,27 @@ public class DeliverySearch extends GenericSearch {
     }
 
     private static ParsedInput parseInitialState(String initialState) {
-        String[] sections = initialState.split(";");
+        GridScanner in = new GridScanner(initialState, "initial state");
         // Need at least m;n;P;S;Stores;... or out wit it
-        if (sections.length < 5) {
+        if (in.fieldCount() < 5) {
             throw new IllegalArgumentException("Invalid initial state format. Expected m;n;P;S;Stores;Customers;Tunnels");
         }
 
-        int m = Integer.parseInt(sections[0]);
-        int n = Integer.parseInt(sections[1]);
-        int packageCount = Integer.parseInt(sections[2]);
-        int storeCount = Integer.parseInt(sections[3]);
+        int m = in.nextInt();
+        in.endField();
+        int n = in.nextInt();
+        in.endField();
+        int packageCount = in.nextInt();
+        in.endField();
+        int storeCount = in.nextInt();
+        in.endField();
+        checkSize(m, n);
 
-        // Format cheetsheet: idx4=stores, idx5=customers, idx6=tunnels.
+        // Format cheetsheet: field 4=stores, 5=customers, 6=tunnels.
 
         // 1) Pull stores out of slot 4.
         List<State> stores = new ArrayList<>();
-        if (!sections[4].isEmpty()) {
-            String[] storeTokens = sections[4].split(",");
-            for (int i = 0; i + 1 < storeTokens.length; i += 2) {
-                stores.add(new State(Integer.parseInt(storeTokens[i]), Integer.parseInt(storeTokens[i + 1])));
-            }
-        }
+        scanCells(in, stores);
 
         // if no s in input -< default vals
         if (stores.isEmpty()) {
@@ -231,46 +688,151 @@ public class DeliverySearch extends GenericSearch {
 
         // 2) Customers hang out in slot 5.
         List<State> customers = new ArrayList<>();
-        if (sections.length > 5 && !sections[5].isEmpty()) {
-            String[] coords = sections[5].split(",");
-            for (int i = 0; i + 1 < coords.length; i += 2) {
-                customers.add(new State(Integer.parseInt(coords[i]), Integer.parseInt(coords[i + 1])));
+        scanCells(in, customers);
+
+        // 3) Any tunnels show up at slot 6; the raw field also goes into the grid fingerprint.
+        int tunnelStart = in.position();
+        Map<State, State> tunnels = scanTunnels(in, m, n);
+        String tunnelSpec = initialState.substring(tunnelStart, in.position());
+        in.endField();
+        return new ParsedInput(m, n, packageCount, storeCount, customers, stores, tunnels, tunnelSpec);
+    }
+
+    // x,y pairs up to the end of the field; an odd number at the end is ignored.
+    private static void scanCells(GridScanner in, List<State> out) {
+        int x = 0;
+        boolean half = false;
+        while (!in.atFieldEnd()) {
+            int value = in.nextInt();
+            if (half) {
+                out.add(new State(x, value));
             }
+            x = value;
+            half = !half;
         }
+        in.endField();
+    }
+
+    private static void checkSize(int m, int n) {
+        if (m <= 0 || n <= 0) {
+            throw new IllegalArgumentException("Grid must be at least 1x1, got " + m + "x" + n);
+        }
+    }
 
-        // 3) Any tunnels show up at slot 6, pair them both ways.
+    // Tunnels come as x1,y1,x2,y2 groups up to the end of the field; pair them both ways. A tunnel
+    // with an end off the grid could never be driven, so it is left out.
+    private static Map<State, State> scanTunnels(GridScanner in, int m, int n) {
         Map<State, State> tunnels = new HashMap<>();
-        if (sections.length > 6 && !sections[6].isEmpty()) {
-            String[] tunnelTokens = sections[6].split(",");
-            for (int i = 0; i + 3 < tunnelTokens.length; i += 4) {
-                State entry = new State(Integer.parseInt(tunnelTokens[i]), Integer.parseInt(tunnelTokens[i + 1]));
-                State exit = new State(Integer.parseInt(tunnelTokens[i + 2]), Integer.parseInt(tunnelTokens[i + 3]));
-                tunnels.put(entry, exit);
-                tunnels.put(exit, entry);
+        int[] group = new int[4];
+        int count = 0;
+        while (!in.atFieldEnd()) {
+            group[count++] = in.nextInt();
+            if (count == group.length) {
+                State entry = new State(group[0], group[1]);
+                State exit = new State(group[2], group[3]);
+                if (entry.onGrid(m, n) && exit.onGrid(m, n)) {
+                    tunnels.put(entry, exit);
+                    tunnels.put(exit, entry);
+                }
+                count = 0;
             }
         }
+        return tunnels;
+    }
+
+    // Flat x,y pairs, as DeliveryQuery and GridFile hold them.
+    private static List<State> cells(int[] coords) {
+        List<State> cells = new ArrayList<>(coords.length / 2);
+        for (int i = 0; i + 1 < coords.length; i += 2) {
+            cells.add(new State(coords[i], coords[i + 1]));
+        }
+        return cells;
+    }
+
+    private static GridGraph compile(int m, int n, Map<State, State> tunnels, String traffic) {
+        return builder(m, n, tunnels, traffic).build();
+    }
+
+    private static GridGraph.Builder builder(int m, int n, Map<State, State> tunnels, String traffic) {
+        GridGraph.Builder builder = new GridGraph.Builder(m, n);
+        for (Map.Entry<State, State> tunnel : tunnels.entrySet()) {
+            builder.tunnel(tunnel.getKey().x, tunnel.getKey().y, tunnel.getValue().x, tunnel.getValue().y);
+        }
+        parseTraffic(traffic, builder::traffic);
+        return builder;
+    }
 
-        return new ParsedInput(m, n, packageCount, storeCount, customers, stores, tunnels);
+    interface TrafficEntry {
+        void accept(int x1, int y1, int x2, int y2, int cost);
     }
 
-    private static Map<String, Integer> parseTraffic(String traffic) {
-        Map<String, Integer> trafficMap = new HashMap<>();
-        if (traffic == null || traffic.trim().isEmpty()) {
-            return trafficMap;
+    // x1,y1,x2,y2,cost records, handed over as they are read. Blank records and records with
+    // fewer than five numbers are skipped; numbers past the fifth are ignored.
+    static void parseTraffic(String traffic, TrafficEntry entry) {
+        if (traffic == null) {
+            return;
         }
-        String[] lines = traffic.split(";");
-        for (String line : lines) {
-            if (line.trim().isEmpty()) {
-                continue;
+        GridScanner in = new GridScanner(traffic, "traffic");
+        int[] record = new int[5];
+        while (!in.atEnd()) {
+            int count = 0;
+            while (!in.atFieldEnd()) {
+                int value = in.nextInt();
+                if (count < record.length) {
+                    record[count] = value;
+                }
+                count++;
             }
-            String[] tokens = line.split(",");
-            if (tokens.length < 5) {
-                continue;
+            in.endField();
+            if (count >= record.length) {
+                entry.accept(record[0], record[1], record[2], record[3], record[4]);
             }
-            String key = tokens[0] + "," + tokens[1] + "," + tokens[2] + "," + tokens[3];
-            trafficMap.put(key, Integer.parseInt(tokens[4]));
         }
-        return trafficMap;
+    }
+
+    // Everything solve() derives from its two input strings; immutable once built, so cached
+    // models are shared between calls.
+    private static final class GridModel {
+        final ParsedInput input;
+        // Only for models loaded from a grid file; text models get theirs from GRAPH_CACHE.
+        final GridGraph graph;
+        // Identifies just the road network (size, tunnels, traffic), not stores or customers.
+        final Fingerprint gridKey;
+
+        GridModel(ParsedInput input, GridGraph graph, Fingerprint gridKey) {
+            this.input = input;
+            this.graph = graph;
+            this.gridKey = gridKey;
+        }
+
+        long footprint() {
+            long inputs = 32L * (input.stores.size() + input.customers.size() + input.tunnels.size());
+            return graph == null ? inputs : graph.footprint() + inputs;
+        }
+    }
+
+    private static final class TreeKey {
+        final Fingerprint grid;
+        final int source;
+
+        TreeKey(Fingerprint grid, int source) {
+            this.grid = grid;
+            this.source = source;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TreeKey)) {
+                return false;
+            }
+            TreeKey other = (TreeKey) obj;
+            return source == other.source && grid.equals(other.grid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * grid.hashCode() + source;
+        }
     }
 
     private static final class ParsedInput {
@@ -281,8 +843,9 @@ public class DeliverySearch extends GenericSearch {
         final List<State> customers;
         final List<State> stores;
         final Map<State, State> tunnels;
+        final String tunnelSpec;
 
-        ParsedInput(int m, int n, int packageCount, int storeCount, List<State> customers, List<State> stores, Map<State, State> tunnels) {
+        ParsedInput(int m, int n, int packageCount, int storeCount, List<State> customers, List<State> stores, Map<State, State> tunnels, String tunnelSpec) {
             this.m = m;
             this.n = n;
             this.packageCount = packageCount;
@@ -290,6 +853,7 @@ public class DeliverySearch extends GenericSearch {
             this.customers = customers;
             this.stores = stores;
             this.tunnels = tunnels;
+            this.tunnelSpec = tunnelSpec;
         }
     }
 }
\ No newline at end of file
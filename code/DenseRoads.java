@@ -0,0 +1,197 @@
+package code;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Road costs for grids too big for the CSR arrays: one byte per (cell, direction) in a buffer
+// outside the heap (a direct buffer, or a grid file mapped straight from disk), 0 for no road and
+// OVERFLOW where the real cost sits in a sorted side table. Tunnels sit in sorted arrays too, so
+// the heap only holds what is rare. Slot dir of a cell is the road to its neighbour in that direction.
+final class DenseRoads {
+
+    static final int OVERFLOW = 0xFF;
+    // Edge ids are cell * SLOTS + k for the k-th road of the cell, its tunnel last.
+    static final int SLOTS = 5;
+    static final int MAX_CELLS = Integer.MAX_VALUE / SLOTS;
+
+    // A flipped store is a transposed graph: slot dir holds the road from that neighbour back into
+    // the cell and reports the action that drove it. Its roads come in the order the CSR transpose
+    // lists them (by source cell id), with the tunnel still last.
+    private static final int[] FORWARD = {GridGraph.UP, GridGraph.DOWN, GridGraph.LEFT, GridGraph.RIGHT};
+    private static final int[] FLIPPED = {GridGraph.LEFT, GridGraph.DOWN, GridGraph.UP, GridGraph.RIGHT};
+
+    final int m;
+    final int n;
+    final boolean flipped;
+    final int maxCost;
+    private final ByteBuffer costs;
+    private final int[] overflowSlots;
+    private final int[] overflowCosts;
+    private final int[] tunnelCells;
+    private final int[] tunnelExits;
+
+    // costs holds m * n * 4 bytes from index 0; the side tables are (slot, cost) and (cell, exit)
+    // pairs in any order.
+    DenseRoads(int m, int n, ByteBuffer costs, int[] overflowSlots, int[] overflowCosts, int[] tunnelCells, int[] tunnelExits, boolean flipped) {
+        if ((long) m * n > MAX_CELLS) {
+            throw new IllegalArgumentException("Grid " + m + "x" + n + " has too many cells for dense roads");
+        }
+        this.m = m;
+        this.n = n;
+        this.flipped = flipped;
+        this.costs = costs;
+        int[] overflowOrder = order(overflowSlots);
+        this.overflowSlots = permute(overflowSlots, overflowOrder);
+        this.overflowCosts = permute(overflowCosts, overflowOrder);
+        int[] tunnelOrder = order(tunnelCells);
+        this.tunnelCells = permute(tunnelCells, tunnelOrder);
+        this.tunnelExits = permute(tunnelExits, tunnelOrder);
+
+        int max = 0;
+        int overflows = 0;
+        for (int slot = 0, slots = m * n * 4; slot < slots; slot++) {
+            int cost = costs.get(slot) & 0xFF;
+            if (cost == OVERFLOW) {
+                overflows++;
+            } else {
+                max = Math.max(max, cost);
+            }
+        }
+        for (int i = 0; i < overflowSlots.length; i++) {
+            if (overflowSlots[i] < 0 || overflowSlots[i] >= m * n * 4 || (costs.get(overflowSlots[i]) & 0xFF) != OVERFLOW) {
+                overflows = -1;
+                break;
+            }
+            max = Math.max(max, overflowCosts[i]);
+        }
+        if (overflows != overflowSlots.length) {
+            throw new IllegalArgumentException("Overflow table does not match the road costs");
+        }
+        for (int i = 0; i < tunnelCells.length; i++) {
+            max = Math.max(max, Math.abs(tunnelCells[i] / n - tunnelExits[i] / n) + Math.abs(tunnelCells[i] % n - tunnelExits[i] % n));
+        }
+        this.maxCost = max;
+        checkBorders();
+    }
+
+    // A cell holds one tunnel at most, so the transpose only fits when no two tunnels share an exit.
+    boolean canTranspose() {
+        int[] exits = tunnelExits.clone();
+        Arrays.sort(exits);
+        for (int i = 1; i < exits.length; i++) {
+            if (exits[i] == exits[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same roads seen from the other end, for GridGraph.reversed().
+    DenseRoads transpose() {
+        int cells = m * n;
+        ByteBuffer reversed = ByteBuffer.allocateDirect(cells * 4);
+        for (int cell = 0; cell < cells; cell++) {
+            int x = cell / n;
+            int y = cell % n;
+            for (int dir = 0; dir < 4; dir++) {
+                int nx = x + GridGraph.DX[dir];
+                int ny = y + GridGraph.DY[dir];
+                if (nx >= 0 && nx < m && ny >= 0 && ny < n) {
+                    reversed.put(cell * 4 + dir, costs.get((nx * n + ny) * 4 + (dir ^ 1)));
+                }
+            }
+        }
+        int[] slots = new int[overflowSlots.length];
+        for (int i = 0; i < slots.length; i++) {
+            int cell = overflowSlots[i] / 4;
+            int dir = overflowSlots[i] % 4;
+            slots[i] = (cell + GridGraph.DX[dir] * n + GridGraph.DY[dir]) * 4 + (dir ^ 1);
+        }
+        return new DenseRoads(m, n, reversed, slots, overflowCosts, tunnelExits, tunnelCells, !flipped);
+    }
+
+    int degree(int cell) {
+        int degree = tunnelExit(cell) >= 0 ? 1 : 0;
+        for (int dir = 0; dir < 4; dir++) {
+            if (costs.get(cell * 4 + dir) != 0) {
+                degree++;
+            }
+        }
+        return degree;
+    }
+
+    // Slot of the k-th road of cell, or TUNNEL once its roads run out.
+    int slot(int cell, int k) {
+        for (int dir : flipped ? FLIPPED : FORWARD) {
+            if (costs.get(cell * 4 + dir) != 0 && k-- == 0) {
+                return dir;
+            }
+        }
+        return GridGraph.TUNNEL;
+    }
+
+    // Action that drives the road in slot dir.
+    byte action(int dir) {
+        return (byte) (flipped ? dir ^ 1 : dir);
+    }
+
+    int cost(int cell, int dir) {
+        int cost = costs.get(cell * 4 + dir) & 0xFF;
+        if (cost == OVERFLOW) {
+            cost = overflowCosts[Arrays.binarySearch(overflowSlots, cell * 4 + dir)];
+        }
+        return cost;
+    }
+
+    int tunnelExit(int cell) {
+        if (tunnelCells.length == 0) {
+            return -1;
+        }
+        int i = Arrays.binarySearch(tunnelCells, cell);
+        return i >= 0 ? tunnelExits[i] : -1;
+    }
+
+    // Heap bytes; the cost buffer itself lives outside the heap.
+    long footprint() {
+        return 8L * (overflowSlots.length + tunnelCells.length);
+    }
+
+    // A road off the edge of the grid would number a cell on the far side, so files that claim one are refused.
+    private void checkBorders() {
+        for (int x = 0; x < m; x++) {
+            checkEmpty(x * n, GridGraph.DOWN);
+            checkEmpty(x * n + n - 1, GridGraph.UP);
+        }
+        for (int y = 0; y < n; y++) {
+            checkEmpty(y, GridGraph.LEFT);
+            checkEmpty((m - 1) * n + y, GridGraph.RIGHT);
+        }
+    }
+
+    private void checkEmpty(int cell, int dir) {
+        if (costs.get(cell * 4 + dir) != 0) {
+            throw new IllegalArgumentException("Road leaves the " + m + "x" + n + " grid at (" + cell / n + "," + cell % n + ")");
+        }
+    }
+
+    private static int[] order(int[] keys) {
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(keys[a], keys[b]));
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    private static int[] permute(int[] values, int[] order) {
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = values[order[i]];
+        }
+        return result;
+    }
+}
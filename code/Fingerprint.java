@@ -0,0 +1,57 @@
+package code;
+
+// 128-bit content hash of a few strings (two independent 64-bit hashes plus total length), so
+// caches can key on large inputs without keeping the strings themselves alive.
+final class Fingerprint {
+
+    private final long high;
+    private final long low;
+    private final long length;
+
+    private Fingerprint(long high, long low, long length) {
+        this.high = high;
+        this.low = low;
+        this.length = length;
+    }
+
+    // null hashes like the empty string; parts are separated so ("ab", "c") != ("a", "bc").
+    static Fingerprint of(CharSequence... parts) {
+        long high = 0xcbf29ce484222325L;
+        long low = 0x9e3779b97f4a7c15L;
+        long length = 0;
+        for (CharSequence part : parts) {
+            int size = part == null ? 0 : part.length();
+            for (int i = 0; i < size; i++) {
+                char c = part.charAt(i);
+                high = (high ^ c) * 0x100000001b3L;
+                low = Long.rotateLeft(low ^ c, 23) * 0xc2b2ae3d27d4eb4fL;
+            }
+            high = (high ^ size) * 0x100000001b3L;
+            low = Long.rotateLeft(low ^ 0xff51afd7ed558ccdL, 23) * 0xc2b2ae3d27d4eb4fL;
+            length += size;
+        }
+        return new Fingerprint(high, low, length);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Fingerprint)) {
+            return false;
+        }
+        Fingerprint other = (Fingerprint) obj;
+        return high == other.high && low == other.low && length == other.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (high ^ (high >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return Long.toHexString(high) + Long.toHexString(low);
+    }
+}
@@ -1,5 +1,8 @@
 package code;
 
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -10,16 +13,100 @@ import java.util.Set;
 
 public abstract class GenericSearch {
 
+    // Cost bound meaning "no bound" for search(initialState, strategy, costBound).
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    // Widest ring BucketQueue gets before best-first search switches to RadixHeap.
+    private static final int MAX_BUCKET_SPAN = 1 << 16;
+
+    // Histogram resolution IDA* uses to pick its next bound.
+    private static final int BOUND_BUCKETS = 64;
+
+    // One per thread, reused by every search that thread runs on a domain of the same size, so
+    // instances themselves hold no scratch and can be searched concurrently. Held softly: a search
+    // keeps its workspace strongly for as long as it runs, but the grid-sized arrays an idle thread
+    // (a common-pool worker after a parallel solve, say) is sitting on go back to the GC when the
+    // heap needs them, and are rebuilt on that thread's next search.
+    private static final ThreadLocal<SoftReference<SearchWorkspace>> WORKSPACES = new ThreadLocal<>();
+
     public abstract boolean isGoal(Object state);
 
     public abstract List<Node> expand(Node node);
 
     public abstract double getHeuristic(Object state);
 
+    // Domains whose states map onto 0..stateCount()-1 override these two and get a
+    // bitset closed set instead of hashing toString() keys on every expansion.
+    protected int stateCount() {
+        return 0;
+    }
+
+    protected int encode(Object state) {
+        throw new UnsupportedOperationException("State encoding not supported by " + getClass().getSimpleName());
+    }
+
+    // Encoded domains also implement these instead of working on Objects: expandEncoded() fills
+    // the caller's buffer (which arrives cleared) and must not allocate per call.
+    protected void expandEncoded(int state, Successors out) {
+        throw new UnsupportedOperationException("State encoding not supported by " + getClass().getSimpleName());
+    }
+
+    protected String operatorName(byte action) {
+        throw new UnsupportedOperationException("State encoding not supported by " + getClass().getSimpleName());
+    }
+
+    protected boolean isEncodedGoal(int state) {
+        throw new UnsupportedOperationException("State encoding not supported by " + getClass().getSimpleName());
+    }
+
+    // Double.POSITIVE_INFINITY means the goal is provably unreachable from state; best-first
+    // searches then never queue it.
+    protected double encodedHeuristic(int state) {
+        return 0;
+    }
+
+    // Bidirectional strategies also need the single goal as an id (-1 = no single goal) and the
+    // edges entering a state: expandEncodedReverse() lists each predecessor with the cost and
+    // action of the edge from that predecessor into state.
+    protected int encodedGoal() {
+        return -1;
+    }
+
+    protected void expandEncodedReverse(int state, Successors out) {
+        throw new UnsupportedOperationException("Reverse expansion not supported by " + getClass().getSimpleName());
+    }
+
+    // Encoded domains whose edge costs are all integers report the largest one (-1 = not integral),
+    // and say whether their heuristic is integral and consistent; together these let UC and A*
+    // pop from a monotone integer queue instead of a comparison heap.
+    protected int maxEdgeCost() {
+        return -1;
+    }
+
+    protected boolean hasIntegralHeuristic() {
+        return false;
+    }
+
     public String search(Object initialState, String strategy) {
+        return search(initialState, strategy, UNBOUNDED);
+    }
+
+    // Same answer as search(initialState, strategy) whenever the goal costs at most costBound;
+    // otherwise cost-ordered strategies (UC, GR, AS, BUC, IDA*) may give up with NoPath as soon as
+    // every remaining path is known to cost more. BF, DF, ID and BBF ignore the bound.
+    public String search(Object initialState, String strategy, int costBound) {
         if ("ID".equals(strategy)) {
             return iterativeDeepening(initialState);
         }
+        if (strategy.startsWith("IDA")) {
+            return iterativeDeepeningAStar(initialState, costBound);
+        }
+        if (isBidirectional(strategy)) {
+            return bidirectionalSearch(initialState, strategy, costBound);
+        }
+        if (stateCount() > 0) {
+            return encodedSearch(initialState, strategy, costBound);
+        }
 
         Collection<Node> frontier;
         if ("BF".equals(strategy) || "DF".equals(strategy)) {
@@ -40,6 +127,9 @@ public abstract class GenericSearch {
             if (node == null) {
                 break;
             }
+            if (frontier instanceof PriorityQueue && node.pathCost + node.heuristic > costBound) {
+                break;
+            }
 
             if (isGoal(node.state)) {
                 return reconstructPath(node, nodesExpanded);
@@ -70,6 +160,600 @@ public abstract class GenericSearch {
         return "NoPath;0;" + nodesExpanded;
     }
 
+    // Same loop as above, but states are looked up by their int id in a bitset sized to the domain,
+    // and the search tree lives in the workspace's NodePool instead of Node objects.
+    private String encodedSearch(Object initialState, String strategy, int costBound) {
+        SearchWorkspace ws = workspace();
+        int goal = runEncoded(ws, new int[] {encode(initialState)}, strategy, null, costBound);
+        return goal >= 0 ? reconstructPath(ws.nodes, goal, ws.expanded) : "NoPath;0;" + ws.expanded;
+    }
+
+    // IDA1/IDA2: depth-first passes bounded by f = g + h. Memory is O(depth) for the path and the
+    // set of states on it, plus a TranspositionTable of at most MAX_SLOTS entries whatever the
+    // state space: a state it remembers reaching in the same pass at no lower cost is skipped,
+    // since that visit already searched everything below it with at least as much budget, and one
+    // it has forgotten is just searched again. Bounds grow in the IDA*_CR way: overflowing f
+    // values go into BOUND_BUCKETS buckets and the next bound takes in about as many new nodes as
+    // the last pass expanded, so wide traffic costs or a non-integral h no longer mean one pass per
+    // distinct f. A bound past the optimum is harmless because a pass that finds the goal keeps
+    // going, pruned to f below that goal's cost, and ends with the cheapest. Like ID, the expanded
+    // count is that of the final pass.
+    private String iterativeDeepeningAStar(Object initialState, int costBound) {
+        if (stateCount() <= 0) {
+            throw new UnsupportedOperationException("IDA* needs encoded states in " + getClass().getSimpleName());
+        }
+        SearchWorkspace ws = workspace();
+        PathSet onPath = new PathSet();
+        TranspositionTable reached = ws.transpositions();
+        int root = encode(initialState);
+        int[] path = new int[16];
+        int[] costs = new int[16];
+        byte[] actions = new byte[16];
+        int[] cursors = new int[16];
+        int[] overflow = new int[BOUND_BUCKETS];
+        double bound = encodedHeuristic(root);
+        if (bound > costBound) {
+            return "NoPath;0;0";
+        }
+
+        while (true) {
+            double least = Double.POSITIVE_INFINITY;
+            double most = Double.NEGATIVE_INFINITY;
+            Arrays.fill(overflow, 0);
+            reached.clear();
+            // f values past the bound land in buckets over [bound, bound + spread).
+            double spread = Math.max(1, bound);
+            String found = null;
+            int foundCost = Integer.MAX_VALUE;
+            ws.expanded = 0;
+            int depth = 0;
+            path[0] = root;
+            costs[0] = 0;
+            cursors[0] = -1;
+            onPath.push(root);
+
+            while (depth >= 0) {
+                int id = path[depth];
+                Successors out = ws.level(depth);
+                if (cursors[depth] < 0) {
+                    double f = costs[depth] + encodedHeuristic(id);
+                    boolean cut = f > bound || f >= foundCost || reached.reachedBefore(id, costs[depth]);
+                    if (f > bound && f < foundCost && f <= costBound) {
+                        least = Math.min(least, f);
+                        most = Math.max(most, f);
+                        overflow[(int) Math.min(BOUND_BUCKETS - 1, (f - bound) / spread * BOUND_BUCKETS)]++;
+                    }
+                    if (cut) {
+                        onPath.pop();
+                        depth--;
+                        continue;
+                    }
+                    if (isEncodedGoal(id)) {
+                        found = pathOf(actions, depth, costs[depth], 0);
+                        foundCost = costs[depth];
+                        onPath.pop();
+                        depth--;
+                        continue;
+                    }
+                    ws.expanded++;
+                    out.clear();
+                    expandEncoded(id, out);
+                    cursors[depth] = 0;
+                }
+
+                int cursor = cursors[depth];
+                while (cursor < out.size() && onPath.contains(out.state(cursor))) {
+                    cursor++;
+                }
+                if (cursor == out.size()) {
+                    onPath.pop();
+                    depth--;
+                    continue;
+                }
+                cursors[depth] = cursor + 1;
+
+                if (++depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                    costs = Arrays.copyOf(costs, depth * 2);
+                    actions = Arrays.copyOf(actions, depth * 2);
+                    cursors = Arrays.copyOf(cursors, depth * 2);
+                }
+                path[depth] = out.state(cursor);
+                costs[depth] = costs[depth - 1] + out.cost(cursor);
+                actions[depth] = out.action(cursor);
+                cursors[depth] = -1;
+                onPath.push(path[depth]);
+            }
+
+            if (found != null) {
+                return found.substring(0, found.lastIndexOf(';') + 1) + ws.expanded;
+            }
+            if (least == Double.POSITIVE_INFINITY) {
+                return "NoPath;0;" + ws.expanded;
+            }
+            // Smallest bucket edge that lets in at least as many nodes as this pass expanded; the
+            // first overflowing f at the very least, so every pass makes progress.
+            double next = most;
+            int target = Math.max(1, ws.expanded);
+            for (int bucket = 0, seen = 0; bucket < BOUND_BUCKETS; bucket++) {
+                seen += overflow[bucket];
+                if (seen >= target) {
+                    next = Math.min(most, bound + spread * (bucket + 1) / BOUND_BUCKETS);
+                    break;
+                }
+            }
+            bound = Math.max(least, Math.min(next, costBound));
+        }
+    }
+
+    // Plan from actions[1..depth], the actions that led into each state on a depth-first stack.
+    private String pathOf(byte[] actions, int depth, int cost, int expanded) {
+        StringBuilder plan = new StringBuilder();
+        for (int i = 1; i <= depth; i++) {
+            if (i > 1) {
+                plan.append(",");
+            }
+            plan.append(operatorName(actions[i]));
+        }
+        return plan + ";" + cost + ";" + expanded;
+    }
+
+    // BBF/BUC: one search forward from initialState and one backward from encodedGoal(), each
+    // labelling the states it reaches; the path is joined where the two meet. Expanded counts
+    // both directions.
+    private String bidirectionalSearch(Object initialState, String strategy, int costBound) {
+        int goal = encodedGoal();
+        if (stateCount() <= 0 || goal < 0) {
+            throw new UnsupportedOperationException("Bidirectional search needs encoded states and a single goal, got " + strategy);
+        }
+        SearchWorkspace forward = workspace();
+        SearchWorkspace backward = forward.partner();
+        SearchLabels from = forward.labels();
+        SearchLabels to = backward.labels();
+        int start = encode(initialState);
+        from.set(start, 0, 0, -1, NodePool.NO_ACTION);
+        to.set(goal, 0, 0, -1, NodePool.NO_ACTION);
+        if (start == goal) {
+            return ";0;0";
+        }
+        int meet = "BBF".equals(strategy)
+                ? bidirectionalBreadthFirst(forward, backward, from, to, start, goal)
+                : bidirectionalUniformCost(forward, backward, from, to, start, goal, costBound);
+        int expanded = forward.expanded + backward.expanded;
+        if (meet < 0) {
+            return "NoPath;0;" + expanded;
+        }
+
+        byte[] actions = new byte[from.depth(meet) + to.depth(meet)];
+        for (int i = from.depth(meet) - 1, cursor = meet; i >= 0; i--, cursor = from.link(cursor)) {
+            actions[i] = from.action(cursor);
+        }
+        for (int i = from.depth(meet), cursor = meet; cursor != goal; i++, cursor = to.link(cursor)) {
+            actions[i] = to.action(cursor);
+        }
+        StringBuilder plan = new StringBuilder();
+        for (int i = 0; i < actions.length; i++) {
+            if (i > 0) {
+                plan.append(",");
+            }
+            plan.append(operatorName(actions[i]));
+        }
+        return plan + ";" + (from.cost(meet) + to.cost(meet)) + ";" + expanded;
+    }
+
+    // Grows whichever side has the smaller frontier by one whole layer. The first layer that
+    // touches the other side holds a fewest-steps path; the meeting state with the fewest steps
+    // (then lowest cost) in that layer is returned.
+    private int bidirectionalBreadthFirst(SearchWorkspace forward, SearchWorkspace backward,
+                                          SearchLabels from, SearchLabels to, int start, int goal) {
+        forward.deque.addLast(start);
+        backward.deque.addLast(goal);
+        while (!forward.deque.isEmpty() && !backward.deque.isEmpty()) {
+            boolean ahead = forward.deque.size() <= backward.deque.size();
+            SearchWorkspace side = ahead ? forward : backward;
+            SearchLabels own = ahead ? from : to;
+            SearchLabels other = ahead ? to : from;
+            Successors out = side.successors;
+            int meet = -1;
+            int bestSteps = Integer.MAX_VALUE;
+            int bestCost = Integer.MAX_VALUE;
+
+            for (int layer = side.deque.size(); layer > 0; layer--) {
+                int id = side.deque.pollFirst();
+                side.expanded++;
+                out.clear();
+                if (ahead) {
+                    expandEncoded(id, out);
+                } else {
+                    expandEncodedReverse(id, out);
+                }
+                for (int i = 0; i < out.size(); i++) {
+                    int child = out.state(i);
+                    if (own.reached(child)) {
+                        continue;
+                    }
+                    own.set(child, own.cost(id) + out.cost(i), own.depth(id) + 1, id, out.action(i));
+                    side.deque.addLast(child);
+                    if (other.reached(child)) {
+                        int steps = own.depth(child) + other.depth(child);
+                        int cost = own.cost(child) + other.cost(child);
+                        if (steps < bestSteps || (steps == bestSteps && cost < bestCost)) {
+                            meet = child;
+                            bestSteps = steps;
+                            bestCost = cost;
+                        }
+                    }
+                }
+            }
+            if (meet >= 0) {
+                return meet;
+            }
+        }
+        return -1;
+    }
+
+    // Two Dijkstra searches advanced from the smaller queue. Every time a label improves and the
+    // state is labelled from the other side too, the joined cost is a candidate. Once the keys
+    // last popped on both sides add up to the best candidate, nothing cheaper can still meet.
+    private int bidirectionalUniformCost(SearchWorkspace forward, SearchWorkspace backward,
+                                         SearchLabels from, SearchLabels to, int start, int goal, int costBound) {
+        IdQueue ahead = frontierFor(forward, false);
+        IdQueue behind = frontierFor(backward, false);
+        ahead.push(start, 0);
+        behind.push(goal, 0);
+        int meet = -1;
+        // Only meetings within the bound count, so the loop also ends once nothing can be.
+        long best = (long) costBound + 1;
+        int lastAhead = 0;
+        int lastBehind = 0;
+
+        try {
+            while (!ahead.isEmpty() && !behind.isEmpty()) {
+                boolean forwards = ahead.size() <= behind.size();
+                SearchWorkspace side = forwards ? forward : backward;
+                IdQueue frontier = forwards ? ahead : behind;
+                SearchLabels own = forwards ? from : to;
+                SearchLabels other = forwards ? to : from;
+                Successors out = side.successors;
+
+                int id = frontier.pop();
+                int cost = own.cost(id);
+                if (forwards) {
+                    lastAhead = cost;
+                } else {
+                    lastBehind = cost;
+                }
+                if ((long) lastAhead + lastBehind >= best) {
+                    break;
+                }
+                own.settle(id);
+                side.expanded++;
+
+                out.clear();
+                if (forwards) {
+                    expandEncoded(id, out);
+                } else {
+                    expandEncodedReverse(id, out);
+                }
+                for (int i = 0; i < out.size(); i++) {
+                    int child = out.state(i);
+                    if (own.settled(child)) {
+                        continue;
+                    }
+                    int pathCost = cost + out.cost(i);
+                    if (!own.reached(child)) {
+                        frontier.push(child, pathCost);
+                    } else if (pathCost < own.cost(child)) {
+                        frontier.decreaseKey(child, pathCost);
+                    } else {
+                        continue;
+                    }
+                    own.set(child, pathCost, own.depth(id) + 1, id, out.action(i));
+                    if (other.reached(child) && (long) pathCost + other.cost(child) < best) {
+                        best = (long) pathCost + other.cost(child);
+                        meet = child;
+                    }
+                }
+            }
+        } finally {
+            ahead.clear();
+            behind.clear();
+        }
+        return meet;
+    }
+
+    // One BF/DF/UC sweep from initialState that keeps going until every goal has been popped, so
+    // each entry is exactly what search() would have returned for that goal on its own (expanded
+    // count included). Needs encoded states; heuristic strategies are goal-specific and refused.
+    public String[] searchAll(Object initialState, List<?> goals, String strategy) {
+        requireUninformed(strategy, "Multi-goal search");
+        int[] goalIds = new int[goals.size()];
+        for (int i = 0; i < goalIds.length; i++) {
+            goalIds[i] = encode(goals.get(i));
+        }
+        String[] results = new String[goalIds.length];
+        if (goalIds.length > 0) {
+            SearchWorkspace ws = workspace();
+            runEncoded(ws, new int[] {encode(initialState)}, strategy, new GoalSweep(ws, goalIds, results), UNBOUNDED);
+            String noPath = "NoPath;0;" + ws.expanded;
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = noPath;
+                }
+            }
+        }
+        return results;
+    }
+
+    // Exhaustive BF/DF/UC run from initialState recording, for every reachable state, the cost,
+    // parent and expanded count at which it was settled; pathTo() then answers any goal with what
+    // search() would have returned for it.
+    SearchTree searchTree(Object initialState, String strategy) {
+        requireUninformed(strategy, "Search trees");
+        SearchTree tree = new SearchTree(stateCount());
+        SearchWorkspace ws = workspace();
+        runEncoded(ws, new int[] {encode(initialState)}, strategy, (nodes, node, expanded) -> {
+            int parent = nodes.parent(node);
+            tree.settle(nodes.state(node), parent < 0 ? -1 : nodes.state(parent), nodes.action(node), nodes.cost(node), expanded);
+            return false;
+        }, UNBOUNDED);
+        tree.seal(ws.expanded);
+        return tree;
+    }
+
+    String pathTo(SearchTree tree, Object goal) {
+        int state = encode(goal);
+        if (!tree.reached(state)) {
+            return "NoPath;0;" + tree.totalExpanded();
+        }
+        byte[] actions = tree.actionsTo(state);
+        StringBuilder plan = new StringBuilder();
+        for (int i = 0; i < actions.length; i++) {
+            if (i > 0) {
+                plan.append(",");
+            }
+            plan.append(operatorName(actions[i]));
+        }
+        return plan + ";" + tree.cost(state) + ";" + tree.expandedAt(state);
+    }
+
+    // One UC/GR/AS run with every source seeded at cost 0, so the goal is reached from whichever
+    // source is cheapest. Sources become the first pool nodes, so the path root is the source index.
+    public SourcedResult searchFromAny(List<?> sources, String strategy) {
+        if (stateCount() <= 0 || "ID".equals(strategy) || "BF".equals(strategy) || "DF".equals(strategy)) {
+            throw new UnsupportedOperationException("Multi-source search needs encoded states and UC, GR or AS, got " + strategy);
+        }
+        int[] roots = new int[sources.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = encode(sources.get(i));
+        }
+        SearchWorkspace ws = workspace();
+        int goal = roots.length > 0 ? runEncoded(ws, roots, strategy, null, UNBOUNDED) : -1;
+        if (goal < 0) {
+            return new SourcedResult(-1, "NoPath;0;" + ws.expanded);
+        }
+        int root = goal;
+        while (ws.nodes.parent(root) >= 0) {
+            root = ws.nodes.parent(root);
+        }
+        return new SourcedResult(root, reconstructPath(ws.nodes, goal, ws.expanded));
+    }
+
+    private void requireUninformed(String strategy, String what) {
+        if (stateCount() <= 0 || "ID".equals(strategy) || requiresHeuristic(strategy)) {
+            throw new UnsupportedOperationException(what + " needs encoded states and BF, DF or UC, got " + strategy);
+        }
+    }
+
+    // Stands in for the isEncodedGoal() test: sees every state once, the first time it is popped
+    // and before it is expanded, and returns true to end the search early.
+    private interface SettleListener {
+        boolean settled(NodePool nodes, int node, int expanded);
+    }
+
+    // Records each goal's result the first time it is popped; done once all of them are settled.
+    private final class GoalSweep implements SettleListener {
+        private final SearchWorkspace ws;
+        private final int[] goals;
+        private final String[] results;
+        private int unsettled;
+
+        GoalSweep(SearchWorkspace ws, int[] goals, String[] results) {
+            this.ws = ws;
+            this.goals = goals;
+            this.results = results;
+            this.unsettled = goals.length;
+            for (int goal : goals) {
+                ws.goals.set(goal);
+            }
+        }
+
+        @Override
+        public boolean settled(NodePool nodes, int node, int expanded) {
+            int id = nodes.state(node);
+            if (!ws.goals.get(id)) {
+                return false;
+            }
+            ws.goals.clear(id);
+            String path = reconstructPath(nodes, node, expanded);
+            for (int i = 0; i < goals.length; i++) {
+                if (goals[i] == id) {
+                    results[i] = path;
+                    unsettled--;
+                }
+            }
+            return unsettled == 0;
+        }
+    }
+
+    // Runs one encoded search and returns the pool index of the goal node reached, or -1.
+    // With a listener, isEncodedGoal() is never consulted and the listener decides when to stop.
+    private int runEncoded(SearchWorkspace ws, int[] roots, String strategy, SettleListener listener, int costBound) {
+        if ("BF".equals(strategy) || "DF".equals(strategy)) {
+            return uninformedSearch(ws, roots[0], "DF".equals(strategy), listener);
+        }
+        return bestFirstSearch(ws, roots, requiresHeuristic(strategy), listener, costBound);
+    }
+
+    private int uninformedSearch(SearchWorkspace ws, int root, boolean depthFirst, SettleListener listener) {
+        NodePool nodes = ws.nodes;
+        IntDeque frontier = ws.deque;
+        BitSet closed = ws.closed;
+        Successors out = ws.successors;
+
+        frontier.addLast(nodes.add(root, -1, 0, NodePool.NO_ACTION));
+
+        while (!frontier.isEmpty()) {
+            int node = frontier.pollFirst();
+            int id = nodes.state(node);
+
+            if (listener == null && isEncodedGoal(id)) {
+                return node;
+            }
+
+            if (closed.get(id)) {
+                continue;
+            }
+            closed.set(id);
+
+            if (listener != null && listener.settled(nodes, node, ws.expanded)) {
+                return -1;
+            }
+
+            ws.expanded++;
+
+            out.clear();
+            expandEncoded(id, out);
+            for (int i = 0; i < out.size(); i++) {
+                int child = out.state(i);
+                if (!closed.get(child)) {
+                    int childNode = nodes.add(child, node, nodes.cost(node) + out.cost(i), out.action(i));
+                    if (depthFirst) {
+                        frontier.addFirst(childNode);
+                    } else {
+                        frontier.addLast(childNode);
+                    }
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    // UC/GR/AS over encoded states: every id is queued at most once and a cheaper path
+    // re-parents the queued node via decrease-key, so neither the frontier nor the node pool
+    // outgrows stateCount().
+    private int bestFirstSearch(SearchWorkspace ws, int[] roots, boolean heuristic, SettleListener listener, int costBound) {
+        IdQueue frontier = frontierFor(ws, heuristic);
+        NodePool nodes = ws.nodes;
+        int[] open = ws.openNode;
+        BitSet closed = ws.closed;
+        Successors out = ws.successors;
+
+        for (int root : roots) {
+            int node = nodes.add(root, -1, 0, NodePool.NO_ACTION);
+            double h = heuristic ? encodedHeuristic(root) : 0;
+            if (!frontier.contains(root) && h != Double.POSITIVE_INFINITY) {
+                frontier.push(root, h);
+                open[root] = node;
+            }
+        }
+
+        try {
+            while (!frontier.isEmpty()) {
+                int id = frontier.pop();
+                int node = open[id];
+                open[id] = -1;
+                if (frontier.key(id) > costBound) {
+                    return -1;
+                }
+
+                if (listener == null) {
+                    if (isEncodedGoal(id)) {
+                        return node;
+                    }
+                } else if (listener.settled(nodes, node, ws.expanded)) {
+                    return -1;
+                }
+
+                closed.set(id);
+                ws.expanded++;
+
+                out.clear();
+                expandEncoded(id, out);
+                for (int i = 0; i < out.size(); i++) {
+                    int child = out.state(i);
+                    if (closed.get(child)) {
+                        continue;
+                    }
+                    int pathCost = nodes.cost(node) + out.cost(i);
+                    double f = pathCost + (heuristic ? encodedHeuristic(child) : 0);
+                    if (f == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    if (!frontier.contains(child)) {
+                        frontier.push(child, f);
+                        open[child] = nodes.add(child, node, pathCost, out.action(i));
+                    } else if (f < frontier.key(child)) {
+                        frontier.decreaseKey(child, f);
+                        nodes.set(open[child], node, pathCost, out.action(i));
+                    }
+                }
+            }
+        } finally {
+            while (!frontier.isEmpty()) {
+                open[frontier.pop()] = -1;
+            }
+            frontier.clear();
+        }
+
+        return -1;
+    }
+
+    SearchWorkspace workspace() {
+        int states = stateCount();
+        SoftReference<SearchWorkspace> held = WORKSPACES.get();
+        SearchWorkspace workspace = held == null ? null : held.get();
+        if (workspace == null || workspace.states != states) {
+            workspace = new SearchWorkspace(states);
+            WORKSPACES.set(new SoftReference<>(workspace));
+        }
+        workspace.reset();
+        return workspace;
+    }
+
+    private IdQueue frontierFor(SearchWorkspace ws, boolean heuristic) {
+        int maxCost = maxEdgeCost();
+        if (maxCost < 0 || (heuristic && !hasIntegralHeuristic())) {
+            return ws.heap();
+        }
+        // A consistent heuristic moves f by at most one more edge cost per step.
+        long span = heuristic ? 2L * maxCost : maxCost;
+        if (span <= MAX_BUCKET_SPAN) {
+            return ws.buckets((int) span);
+        }
+        return ws.radix();
+    }
+
+    private String reconstructPath(NodePool nodes, int node, int expanded) {
+        byte[] actions = new byte[nodes.depth(node)];
+        for (int i = actions.length - 1, cursor = node; i >= 0; i--, cursor = nodes.parent(cursor)) {
+            actions[i] = nodes.action(cursor);
+        }
+        StringBuilder plan = new StringBuilder();
+        for (int i = 0; i < actions.length; i++) {
+            if (i > 0) {
+                plan.append(",");
+            }
+            plan.append(operatorName(actions[i]));
+        }
+        return plan + ";" + nodes.cost(node) + ";" + expanded;
+    }
+
+    private boolean isBidirectional(String strategy) {
+        return "BBF".equals(strategy) || "BUC".equals(strategy);
+    }
+
     private boolean requiresHeuristic(String strategy) {
         return strategy.startsWith("GR") || strategy.startsWith("AS");
     }
@@ -161,6 +845,17 @@ public abstract class GenericSearch {
         return plan + ";" + (int) cost + ";" + expanded;
     }
 
+    public static final class SourcedResult {
+        // Index into the sources list the path starts from, -1 when there is no path.
+        public final int source;
+        public final String result;
+
+        SourcedResult(int source, String result) {
+            this.source = source;
+            this.result = result;
+        }
+    }
+
     private static class SearchResult {
         final String solution;
         final int expanded;
@@ -0,0 +1,205 @@
+package code;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Binary snapshot of a compiled grid, little-endian:
+//   int magic, int version, int m, int n, int packageCount, int storeCount,
+//   int S then S x,y pairs (stores), int C then C x,y pairs (customers),
+//   int T then T fromX,fromY,toX,toY groups (one per tunnel direction),
+//   m * n * 4 bytes: cost of the road leaving each cell up/down/left/right, 0 when blocked,
+//   OVERFLOW when it does not fit a byte, then int K and K (slot, cost) pairs for those.
+// Files are read through FileChannel.map, so opening one is a page-in plus a linear scan and
+// the OS shares the pages between processes that load the same snapshot. Read off-heap, the
+// graph keeps using the mapped cost bytes in place rather than copying them into CSR arrays.
+final class GridFile {
+
+    private static final int MAGIC = 0x52475054;
+    private static final int VERSION = 1;
+    private static final int OVERFLOW = DenseRoads.OVERFLOW;
+
+    final int m;
+    final int n;
+    final int packageCount;
+    final int storeCount;
+    final int[] stores;
+    final int[] customers;
+    final int[] tunnels;
+    final GridGraph graph;
+
+    private GridFile(int m, int n, int packageCount, int storeCount, int[] stores, int[] customers, int[] tunnels, GridGraph graph) {
+        this.m = m;
+        this.n = n;
+        this.packageCount = packageCount;
+        this.storeCount = storeCount;
+        this.stores = stores;
+        this.customers = customers;
+        this.tunnels = tunnels;
+        this.graph = graph;
+    }
+
+    // stores and customers are flat x,y pairs; tunnels and road costs come from graph.
+    static void write(Path file, int packageCount, int storeCount, int[] stores, int[] customers, GridGraph graph) throws IOException {
+        int m = graph.m;
+        int n = graph.n;
+        int cells = graph.cellCount();
+        int tunnelCount = 0;
+        int overflowCount = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            for (int edge = graph.begin(cell); edge < graph.end(cell); edge++) {
+                if (graph.action(edge) == GridGraph.TUNNEL) {
+                    tunnelCount++;
+                } else if (graph.cost(edge) >= OVERFLOW) {
+                    overflowCount++;
+                }
+            }
+        }
+
+        long size = 4L * 9 + 4L * (stores.length + customers.length) + 16L * tunnelCount + 4L * cells + 4 + 8L * overflowCount;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid " + m + "x" + n + " is too large for one grid file");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION).putInt(m).putInt(n).putInt(packageCount).putInt(storeCount);
+            putPairs(out, stores);
+            putPairs(out, customers);
+            out.putInt(tunnelCount);
+            for (int cell = 0; cell < cells; cell++) {
+                for (int edge = graph.begin(cell); edge < graph.end(cell); edge++) {
+                    if (graph.action(edge) == GridGraph.TUNNEL) {
+                        int exit = graph.target(edge);
+                        out.putInt(cell / n).putInt(cell % n).putInt(exit / n).putInt(exit % n);
+                    }
+                }
+            }
+            for (int cell = 0; cell < cells; cell++) {
+                for (int dir = 0; dir < 4; dir++) {
+                    out.put((byte) Math.min(graph.roadCost(cell, dir), OVERFLOW));
+                }
+            }
+            out.putInt(overflowCount);
+            for (int cell = 0; cell < cells; cell++) {
+                for (int edge = graph.begin(cell); edge < graph.end(cell); edge++) {
+                    if (graph.action(edge) != GridGraph.TUNNEL && graph.cost(edge) >= OVERFLOW) {
+                        out.putInt(cell * 4 + graph.action(edge)).putInt(graph.cost(edge));
+                    }
+                }
+            }
+            out.force();
+        }
+    }
+
+    static GridFile read(Path file, boolean offHeap) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + " is too large to be a grid file");
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            in.order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                    throw new IllegalArgumentException(file + " is not a version " + VERSION + " grid file");
+                }
+                int m = in.getInt();
+                int n = in.getInt();
+                int packageCount = in.getInt();
+                int storeCount = in.getInt();
+                if (m <= 0 || n <= 0 || (long) m * n * 4 > in.remaining()) {
+                    throw new IllegalArgumentException(file + " has a bad grid size " + m + "x" + n);
+                }
+                int[] stores = getPairs(in);
+                int[] customers = getPairs(in);
+
+                int[] tunnels = new int[4 * checkedCount(in, 16)];
+                for (int i = 0; i < tunnels.length; i += 4) {
+                    for (int k = 0; k < 4; k++) {
+                        tunnels[i + k] = in.getInt();
+                    }
+                    checkCell(tunnels[i], tunnels[i + 1], m, n);
+                    checkCell(tunnels[i + 2], tunnels[i + 3], m, n);
+                }
+                int slots = m * n * 4;
+                if (slots > in.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                int costsAt = in.position();
+                in.position(costsAt + slots);
+                int[] overflowSlots = new int[checkedCount(in, 8)];
+                int[] overflowCosts = new int[overflowSlots.length];
+                for (int i = 0; i < overflowSlots.length; i++) {
+                    overflowSlots[i] = in.getInt();
+                    overflowCosts[i] = in.getInt();
+                    if (overflowSlots[i] < 0 || overflowSlots[i] >= slots) {
+                        throw new IllegalArgumentException(file + " has an overflow cost for missing road " + overflowSlots[i]);
+                    }
+                }
+
+                GridGraph graph;
+                if (offHeap) {
+                    int[] tunnelCells = new int[tunnels.length / 4];
+                    int[] tunnelExits = new int[tunnelCells.length];
+                    for (int i = 0; i < tunnelCells.length; i++) {
+                        tunnelCells[i] = tunnels[4 * i] * n + tunnels[4 * i + 1];
+                        tunnelExits[i] = tunnels[4 * i + 2] * n + tunnels[4 * i + 3];
+                    }
+                    graph = GridGraph.offHeap(new DenseRoads(m, n, in.slice(costsAt, slots), overflowSlots, overflowCosts,
+                            tunnelCells, tunnelExits, false));
+                } else {
+                    GridGraph.Builder builder = new GridGraph.Builder(m, n);
+                    for (int i = 0; i < tunnels.length; i += 4) {
+                        builder.tunnel(tunnels[i], tunnels[i + 1], tunnels[i + 2], tunnels[i + 3]);
+                    }
+                    for (int slot = 0; slot < slots; slot++) {
+                        builder.road(slot, in.get(costsAt + slot) & 0xFF);
+                    }
+                    for (int i = 0; i < overflowSlots.length; i++) {
+                        builder.road(overflowSlots[i], overflowCosts[i]);
+                    }
+                    graph = builder.build();
+                }
+                return new GridFile(m, n, packageCount, storeCount, stores, customers, tunnels, graph);
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException(file + " is truncated", e);
+            }
+        }
+    }
+
+    private static void putPairs(MappedByteBuffer out, int[] coords) {
+        out.putInt(coords.length / 2);
+        for (int coord : coords) {
+            out.putInt(coord);
+        }
+    }
+
+    // Stores and customers may lie off the grid like in the text form; solve() answers those NoPath.
+    private static int[] getPairs(MappedByteBuffer in) {
+        int[] coords = new int[2 * checkedCount(in, 8)];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = in.getInt();
+        }
+        return coords;
+    }
+
+    // A count read from the file, refused if that many entries of entrySize bytes cannot follow.
+    private static int checkedCount(MappedByteBuffer in, int entrySize) {
+        int count = in.getInt();
+        if (count < 0 || (long) count * entrySize > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    private static void checkCell(int x, int y, int m, int n) {
+        if (x < 0 || x >= m || y < 0 || y >= n) {
+            throw new IllegalArgumentException("Grid file cell (" + x + "," + y + ") lies outside the " + m + "x" + n + " grid");
+        }
+    }
+}
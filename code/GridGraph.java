@@ -0,0 +1,431 @@
+package code;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Grid + traffic + tunnels compiled once into compressed sparse rows: the edges leaving
+// cell c are offsets[c]..offsets[c + 1] in the parallel targets/costs/actions arrays (costs chunked).
+// Blocked roads (cost <= 0) never make it in here. Grids loaded off-heap keep DenseRoads instead
+// of the arrays; callers only see begin/end/target/cost/action either way.
+final class GridGraph {
+
+    static final byte UP = 0;
+    static final byte DOWN = 1;
+    static final byte LEFT = 2;
+    static final byte RIGHT = 3;
+    static final byte TUNNEL = 4;
+
+    static final String[] ACTIONS = {"up", "down", "left", "right", "tunnel"};
+
+    // Edge costs are kept in chunks of 1 << COST_CHUNK_BITS edges, so a re-priced copy of the graph
+    // (withCosts) shares every chunk it does not touch.
+    private static final int COST_CHUNK_BITS = 12;
+    private static final int COST_CHUNK_MASK = (1 << COST_CHUNK_BITS) - 1;
+
+    // Indexed by UP..RIGHT, same order expand() always used.
+    static final int[] DX = {0, 0, -1, 1};
+    static final int[] DY = {1, -1, 0, 0};
+
+    final int m;
+    final int n;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[][] costs;
+    private final byte[] actions;
+    private final int maxCost;
+    private final DenseRoads dense;
+    private volatile GridGraph reversed;
+    private volatile BitSet uniformInterior;
+    private volatile ContractionHierarchy hierarchy;
+    private volatile Landmarks landmarks;
+    private volatile PortalHeuristic portals;
+    // Told whenever one of the structures above is attached, so a cache holding this graph can
+    // weigh it again.
+    private volatile Runnable onGrow;
+
+    private GridGraph(int m, int n, int[] offsets, int[] targets, int[][] costs, byte[] actions, int maxCost) {
+        this.m = m;
+        this.n = n;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.costs = costs;
+        this.actions = actions;
+        this.maxCost = maxCost;
+        this.dense = null;
+    }
+
+    private GridGraph(DenseRoads dense) {
+        this.m = dense.m;
+        this.n = dense.n;
+        this.offsets = null;
+        this.targets = null;
+        this.costs = null;
+        this.actions = null;
+        this.maxCost = dense.maxCost;
+        this.dense = dense;
+    }
+
+    static GridGraph offHeap(DenseRoads roads) {
+        return new GridGraph(roads);
+    }
+
+    int cellCount() {
+        return m * n;
+    }
+
+    int cell(int x, int y) {
+        return x * n + y;
+    }
+
+    int begin(int cell) {
+        return dense == null ? offsets[cell] : cell * DenseRoads.SLOTS;
+    }
+
+    int end(int cell) {
+        return dense == null ? offsets[cell + 1] : cell * DenseRoads.SLOTS + dense.degree(cell);
+    }
+
+    int target(int edge) {
+        if (dense == null) {
+            return targets[edge];
+        }
+        int cell = edge / DenseRoads.SLOTS;
+        int dir = dense.slot(cell, edge % DenseRoads.SLOTS);
+        return dir == TUNNEL ? dense.tunnelExit(cell) : cell + DX[dir] * n + DY[dir];
+    }
+
+    int cost(int edge) {
+        if (dense == null) {
+            return costs[edge >>> COST_CHUNK_BITS][edge & COST_CHUNK_MASK];
+        }
+        int cell = edge / DenseRoads.SLOTS;
+        int dir = dense.slot(cell, edge % DenseRoads.SLOTS);
+        if (dir == TUNNEL) {
+            int exit = dense.tunnelExit(cell);
+            return Math.abs(cell / n - exit / n) + Math.abs(cell % n - exit % n);
+        }
+        return dense.cost(cell, dir);
+    }
+
+    byte action(int edge) {
+        if (dense == null) {
+            return actions[edge];
+        }
+        int dir = dense.slot(edge / DenseRoads.SLOTS, edge % DenseRoads.SLOTS);
+        return dir == TUNNEL ? TUNNEL : dense.action(dir);
+    }
+
+    int maxCost() {
+        return maxCost;
+    }
+
+    // Same cells with every edge flipped: row c lists the cells that can drive into c, each with the
+    // cost and forward action of that edge. Built on first use and kept alongside this graph; an
+    // off-heap graph gets an off-heap transpose unless two tunnels share an exit.
+    GridGraph reversed() {
+        GridGraph result = reversed;
+        if (result == null && dense != null && dense.canTranspose()) {
+            result = new GridGraph(dense.transpose());
+            result.onGrow = this::grown;
+            reversed = result;
+            grown();
+        } else if (result == null) {
+            int cells = cellCount();
+            int[] reverseOffsets = new int[cells + 1];
+            int edges = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                for (int edge = begin(cell), end = end(cell); edge < end; edge++) {
+                    reverseOffsets[target(edge) + 1]++;
+                    edges++;
+                }
+            }
+            for (int cell = 0; cell < cells; cell++) {
+                reverseOffsets[cell + 1] += reverseOffsets[cell];
+            }
+            int[] fill = Arrays.copyOf(reverseOffsets, cells);
+            int[] reverseTargets = new int[edges];
+            int[][] reverseCosts = costChunks(edges);
+            byte[] reverseActions = new byte[edges];
+            for (int cell = 0; cell < cells; cell++) {
+                for (int edge = begin(cell), end = end(cell); edge < end; edge++) {
+                    int slot = fill[target(edge)]++;
+                    reverseTargets[slot] = cell;
+                    reverseCosts[slot >>> COST_CHUNK_BITS][slot & COST_CHUNK_MASK] = cost(edge);
+                    reverseActions[slot] = action(edge);
+                }
+            }
+            result = new GridGraph(m, n, reverseOffsets, reverseTargets, reverseCosts, reverseActions, maxCost);
+            result.onGrow = this::grown;
+            reversed = result;
+            grown();
+        }
+        return result;
+    }
+
+    // Cells whose own roads and whose neighbours' roads all cost 1 both ways, with no tunnel end on
+    // any of them: every shortest path through such a cell has equal-cost twins, which is what
+    // jump point search prunes. Built on first use.
+    BitSet uniformInterior() {
+        BitSet result = uniformInterior;
+        if (result == null) {
+            int cells = cellCount();
+            BitSet irregular = new BitSet(cells);
+            for (int cell = 0; cell < cells; cell++) {
+                int x = cell / n;
+                int y = cell % n;
+                for (int dir = 0; dir < 4; dir++) {
+                    int nx = x + DX[dir];
+                    int ny = y + DY[dir];
+                    if (nx < 0 || nx >= m || ny < 0 || ny >= n) {
+                        continue;
+                    }
+                    if (roadCost(cell, dir) != 1) {
+                        irregular.set(cell);
+                        irregular.set(cell(nx, ny));
+                    }
+                }
+                for (int edge = begin(cell), end = end(cell); edge < end; edge++) {
+                    if (action(edge) == TUNNEL) {
+                        irregular.set(cell);
+                        irregular.set(target(edge));
+                    }
+                }
+            }
+            result = new BitSet(cells);
+            for (int cell = 0; cell < cells; cell++) {
+                boolean interior = !irregular.get(cell);
+                int x = cell / n;
+                int y = cell % n;
+                for (int dir = 0; dir < 4 && interior; dir++) {
+                    int nx = x + DX[dir];
+                    int ny = y + DY[dir];
+                    interior = nx < 0 || nx >= m || ny < 0 || ny >= n || !irregular.get(cell(nx, ny));
+                }
+                result.set(cell, interior);
+            }
+            uniformInterior = result;
+            grown();
+        }
+        return result;
+    }
+
+    // Preprocessing for the CH strategy, paid by the first query that needs it and shared by
+    // every later one on this graph.
+    synchronized ContractionHierarchy hierarchy() {
+        if (hierarchy == null) {
+            hierarchy = ContractionHierarchy.build(this);
+            grown();
+        }
+        return hierarchy;
+    }
+
+    // Landmark tables for the ALT heuristic (AS3/GR3), shared by every query on this graph.
+    synchronized Landmarks landmarks() {
+        if (landmarks == null) {
+            landmarks = Landmarks.build(this, Landmarks.DEFAULT_COUNT);
+            grown();
+        }
+        return landmarks;
+    }
+
+    synchronized PortalHeuristic portals() {
+        if (portals == null) {
+            portals = new PortalHeuristic(this);
+            grown();
+        }
+        return portals;
+    }
+
+    // Cost of the road leaving cell in direction dir, 0 when it is blocked or leaves the grid.
+    int roadCost(int cell, int dir) {
+        if (dense != null) {
+            return dense.cost(cell, dense.flipped ? dir ^ 1 : dir);
+        }
+        for (int edge = offsets[cell]; edge < offsets[cell + 1]; edge++) {
+            if (actions[edge] == dir) {
+                return cost(edge);
+            }
+        }
+        return 0;
+    }
+
+    // Same roads with some costs changed: slots are cell * 4 + dir, costs the new prices, all of them
+    // still open. Offsets, targets, actions and every untouched cost chunk are shared with this
+    // graph. Returns null when a slot is not a road here (it was blocked) or a cost would block it,
+    // or for off-heap graphs; the caller then builds from scratch. maxCost may stay above the real
+    // maximum after a price drop, which only makes the bucket queues a little wider.
+    GridGraph withCosts(int[] slots, int[] newCosts, int count) {
+        if (dense != null) {
+            return null;
+        }
+        int[][] patched = costs.clone();
+        boolean[] copied = new boolean[patched.length];
+        int max = maxCost;
+        for (int i = 0; i < count; i++) {
+            int cell = slots[i] / 4;
+            int edge = offsets[cell];
+            while (edge < offsets[cell + 1] && actions[edge] != slots[i] % 4) {
+                edge++;
+            }
+            if (edge == offsets[cell + 1] || newCosts[i] <= 0) {
+                return null;
+            }
+            int chunk = edge >>> COST_CHUNK_BITS;
+            if (!copied[chunk]) {
+                patched[chunk] = patched[chunk].clone();
+                copied[chunk] = true;
+            }
+            patched[chunk][edge & COST_CHUNK_MASK] = newCosts[i];
+            max = Math.max(max, newCosts[i]);
+        }
+        return new GridGraph(m, n, offsets, targets, patched, actions, max);
+    }
+
+    private static int[][] costChunks(int edges) {
+        int[][] chunks = new int[(edges + COST_CHUNK_MASK) >>> COST_CHUNK_BITS][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new int[Math.min(1 << COST_CHUNK_BITS, edges - (i << COST_CHUNK_BITS))];
+        }
+        return chunks;
+    }
+
+    // Rough heap bytes held by the arrays and by whatever has been built on this graph so far,
+    // used to weigh cached graphs. Never takes this graph's lock.
+    long footprint() {
+        long bytes = dense == null ? 4L * offsets.length + 9L * targets.length : dense.footprint();
+        GridGraph reverse = reversed;
+        BitSet interior = uniformInterior;
+        PortalHeuristic portalTables = portals;
+        ContractionHierarchy contracted = hierarchy;
+        Landmarks landmarkTables = landmarks;
+        bytes += reverse == null ? 0 : reverse.footprint();
+        bytes += interior == null ? 0 : interior.size() / 8;
+        bytes += portalTables == null ? 0 : portalTables.footprint();
+        bytes += contracted == null ? 0 : contracted.footprint();
+        bytes += landmarkTables == null ? 0 : landmarkTables.footprint();
+        return bytes;
+    }
+
+    void onGrow(Runnable listener) {
+        onGrow = listener;
+    }
+
+    private void grown() {
+        Runnable listener = onGrow;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    static final class Builder {
+        private static final int UNSET = Integer.MIN_VALUE;
+
+        private final int m;
+        private final int n;
+        // Explicit traffic entries per (cell, direction); a road falls back to the reverse entry, then to 1.
+        private final int[] traffic;
+        private final int[] tunnelExit;
+
+        Builder(int m, int n) {
+            this.m = m;
+            this.n = n;
+            this.traffic = new int[m * n * 4];
+            this.tunnelExit = new int[m * n];
+            Arrays.fill(traffic, UNSET);
+            Arrays.fill(tunnelExit, -1);
+        }
+
+        // Entries that are not between two adjacent in-grid cells can never be driven, so they are dropped.
+        Builder traffic(int x1, int y1, int x2, int y2, int cost) {
+            if (!inside(x1, y1) || !inside(x2, y2)) {
+                return this;
+            }
+            for (int dir = 0; dir < 4; dir++) {
+                if (x1 + DX[dir] == x2 && y1 + DY[dir] == y2) {
+                    traffic[(x1 * n + y1) * 4 + dir] = cost;
+                    break;
+                }
+            }
+            return this;
+        }
+
+        // Raw form of traffic() for loaders that already hold resolved costs: slot is cell * 4 + dir.
+        Builder road(int slot, int cost) {
+            traffic[slot] = cost;
+            return this;
+        }
+
+        Builder tunnel(int fromX, int fromY, int toX, int toY) {
+            tunnelExit[fromX * n + fromY] = toX * n + toY;
+            return this;
+        }
+
+        GridGraph build() {
+            int cells = m * n;
+            int[] offsets = new int[cells + 1];
+            for (int cell = 0; cell < cells; cell++) {
+                int degree = tunnelExit[cell] >= 0 ? 1 : 0;
+                for (int dir = 0; dir < 4; dir++) {
+                    if (roadCost(cell, dir) > 0) {
+                        degree++;
+                    }
+                }
+                offsets[cell + 1] = offsets[cell] + degree;
+            }
+
+            int[] targets = new int[offsets[cells]];
+            int[][] costs = costChunks(offsets[cells]);
+            byte[] actions = new byte[offsets[cells]];
+            int maxCost = 0;
+            int edge = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                int x = cell / n;
+                int y = cell % n;
+                for (byte dir = 0; dir < 4; dir++) {
+                    int cost = roadCost(cell, dir);
+                    if (cost > 0) {
+                        targets[edge] = (x + DX[dir]) * n + y + DY[dir];
+                        costs[edge >>> COST_CHUNK_BITS][edge & COST_CHUNK_MASK] = cost;
+                        actions[edge] = dir;
+                        maxCost = Math.max(maxCost, cost);
+                        edge++;
+                    }
+                }
+                int exit = tunnelExit[cell];
+                if (exit >= 0) {
+                    int cost = Math.abs(x - exit / n) + Math.abs(y - exit % n);
+                    targets[edge] = exit;
+                    costs[edge >>> COST_CHUNK_BITS][edge & COST_CHUNK_MASK] = cost;
+                    actions[edge] = TUNNEL;
+                    maxCost = Math.max(maxCost, cost);
+                    edge++;
+                }
+            }
+            return new GridGraph(m, n, offsets, targets, costs, actions, maxCost);
+        }
+
+        int tunnelExit(int cell) {
+            return tunnelExit[cell];
+        }
+
+        // Cost the road would get in the graph, <= 0 when blocked or off the grid. Readable before
+        // build() so IncrementalPlanner can keep planning on a builder it keeps editing.
+        int roadCost(int cell, int dir) {
+            int x = cell / n + DX[dir];
+            int y = cell % n + DY[dir];
+            if (!inside(x, y)) {
+                return 0;
+            }
+            int forward = traffic[cell * 4 + dir];
+            if (forward != UNSET) {
+                return forward;
+            }
+            int backward = traffic[(x * n + y) * 4 + (dir ^ 1)];
+            return backward != UNSET ? backward : 1;
+        }
+
+        private boolean inside(int x, int y) {
+            return x >= 0 && x < m && y >= 0 && y < n;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package code;
+
+// Single pass over the ';'-separated fields and ','-separated numbers of the text formats.
+// Numbers are read straight out of the CharSequence, so nothing gets split or copied into
+// substrings, and every error names the offset where the input went wrong.
+final class GridScanner {
+
+    private final CharSequence text;
+    private final String what;
+    private final int length;
+    private int pos;
+
+    GridScanner(CharSequence text, String what) {
+        this.text = text;
+        this.what = what;
+        this.length = text.length();
+    }
+
+    int position() {
+        return pos;
+    }
+
+    boolean atEnd() {
+        return pos >= length;
+    }
+
+    // Fields up to the last non-empty one, which is what String.split(";") would give.
+    int fieldCount() {
+        int last = length - 1;
+        while (last >= 0 && text.charAt(last) == ';') {
+            last--;
+        }
+        int count = 1;
+        for (int i = 0; i < last; i++) {
+            if (text.charAt(i) == ';') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // True once the current field has no numbers left.
+    boolean atFieldEnd() {
+        skipSpaces();
+        return pos >= length || text.charAt(pos) == ';';
+    }
+
+    // The current field must be used up; steps over its ';'.
+    void endField() {
+        if (!atFieldEnd()) {
+            throw error(pos, "expected ';'");
+        }
+        if (pos < length) {
+            pos++;
+        }
+    }
+
+    // The next number in the current field, with the ',' after it if there is one.
+    int nextInt() {
+        skipSpaces();
+        int start = pos;
+        boolean negative = false;
+        if (pos < length && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+            negative = text.charAt(pos) == '-';
+            pos++;
+        }
+        long value = 0;
+        int digitsStart = pos;
+        while (pos < length) {
+            int digit = text.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw error(start, "number out of range");
+            }
+            pos++;
+        }
+        if (pos == digitsStart) {
+            throw error(pos, "expected a number");
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw error(start, "number out of range");
+        }
+        skipSpaces();
+        if (pos < length && text.charAt(pos) == ',') {
+            pos++;
+        } else if (pos < length && text.charAt(pos) != ';') {
+            throw error(pos, "expected ',' or ';'");
+        }
+        return (int) value;
+    }
+
+    private void skipSpaces() {
+        while (pos < length && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(int at, String message) {
+        String found = at < length ? "'" + text.charAt(at) + "'" : "end of input";
+        return new IllegalArgumentException("Malformed " + what + ": " + message + " at offset " + at + ", found " + found);
+    }
+}
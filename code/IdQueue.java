@@ -0,0 +1,23 @@
+package code;
+
+// Priority queue over ids 0..capacity-1 where each id is queued at most once.
+// Implementations: IndexedMinHeap (any keys), BucketQueue and RadixHeap (monotone integer keys).
+interface IdQueue {
+
+    boolean isEmpty();
+
+    int size();
+
+    boolean contains(int id);
+
+    // Also still answers for the id pop() just returned.
+    double key(int id);
+
+    void push(int id, double key);
+
+    void decreaseKey(int id, double key);
+
+    int pop();
+
+    void clear();
+}
@@ -0,0 +1,369 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Keeps the routes of one delivery problem alive across traffic changes. Each customer owns an
+// LPA* search rooted at the customer and walking roads backwards, so g(c) is the cheapest ride
+// from cell c to that customer and every store's cost is read straight off g. A traffic delta
+// only reopens the cells whose outgoing roads changed, and the repair spreads from there
+// instead of searching again from scratch. Not thread-safe; one caller drives it.
+public final class IncrementalPlanner {
+
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    private final int m;
+    private final int n;
+    // Cell of each store, -1 for one off the grid that can serve nobody.
+    private final int[] stores;
+    // The builder stays the source of truth for road costs; deltas are written into it.
+    private final GridGraph.Builder roads;
+    // Tunnels sorted by exit, so the cells driving into a given cell can be found backwards.
+    private final int[] tunnelExits;
+    private final int[] tunnelEntries;
+    // Manhattan distance to the nearest store: consistent, and 0 on every store, so a store's
+    // key is just its cost and a cell is a store exactly when its distance is 0.
+    private final int[] storeDistance;
+    private final Route[] routes;
+
+    IncrementalPlanner(int m, int n, int[] storeCoords, int[] customerCoords, GridGraph.Builder roads) {
+        this.m = m;
+        this.n = n;
+        this.roads = roads;
+        int cells = m * n;
+        this.stores = new int[storeCoords.length / 2];
+        boolean anyStore = false;
+        for (int i = 0; i < stores.length; i++) {
+            stores[i] = cellAt(storeCoords[2 * i], storeCoords[2 * i + 1]);
+            anyStore |= stores[i] >= 0;
+        }
+
+        int tunnelCount = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (roads.tunnelExit(cell) >= 0) {
+                tunnelCount++;
+            }
+        }
+        long[] tunnels = new long[tunnelCount];
+        for (int cell = 0, i = 0; cell < cells; cell++) {
+            if (roads.tunnelExit(cell) >= 0) {
+                tunnels[i++] = (long) roads.tunnelExit(cell) * cells + cell;
+            }
+        }
+        Arrays.sort(tunnels);
+        this.tunnelExits = new int[tunnelCount];
+        this.tunnelEntries = new int[tunnelCount];
+        for (int i = 0; i < tunnelCount; i++) {
+            tunnelExits[i] = (int) (tunnels[i] / cells);
+            tunnelEntries[i] = (int) (tunnels[i] % cells);
+        }
+
+        this.storeDistance = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int nearest = INFINITE;
+            for (int store : stores) {
+                if (store >= 0) {
+                    nearest = Math.min(nearest, Math.abs(cell / n - store / n) + Math.abs(cell % n - store % n));
+                }
+            }
+            storeDistance[cell] = nearest;
+        }
+
+        // A customer off the grid, or one with no store on it, has no route and is always NoPath.
+        this.routes = new Route[customerCoords.length / 2];
+        for (int i = 0; i < routes.length; i++) {
+            int goal = cellAt(customerCoords[2 * i], customerCoords[2 * i + 1]);
+            if (goal < 0 || !anyStore) {
+                continue;
+            }
+            Route route = new Route(goal);
+            int slot = route.slot(route.goal);
+            route.rhs[slot] = 0;
+            storeChanged(route, slot);
+            route.open.push(slot, key(route, slot));
+            routes[i] = route;
+        }
+    }
+
+    // Current best delivery per customer, in customer order. expanded counts the cells the last
+    // repair (or the first search) had to expand.
+    public List<Delivery> plans() {
+        List<Delivery> plans = new ArrayList<>(routes.length);
+        for (int i = 0; i < routes.length; i++) {
+            Route route = routes[i];
+            if (route == null) {
+                plans.add(Delivery.of(-1, i, null));
+                continue;
+            }
+            if (route.plan == null) {
+                route.expanded = 0;
+                computeShortestPath(route);
+                route.plan = delivery(route, i);
+            }
+            plans.add(route.plan);
+        }
+        return plans;
+    }
+
+    // Applies x1,y1,x2,y2,cost records in the traffic format and repairs every route.
+    public List<Delivery> update(String deltas) {
+        IntDeque changed = new IntDeque();
+        DeliverySearch.parseTraffic(deltas, (x1, y1, x2, y2, cost) -> {
+            int dir = direction(x1, y1, x2, y2);
+            if (dir < 0) {
+                return;
+            }
+            int from = x1 * n + y1;
+            int to = x2 * n + y2;
+            int before = Math.max(roads.roadCost(from, dir), 0);
+            int beforeBack = Math.max(roads.roadCost(to, dir ^ 1), 0);
+            roads.traffic(x1, y1, x2, y2, cost);
+            if (before != Math.max(roads.roadCost(from, dir), 0)) {
+                changed.addLast(from);
+            }
+            // The way back follows this entry too when it has none of its own.
+            if (beforeBack != Math.max(roads.roadCost(to, dir ^ 1), 0)) {
+                changed.addLast(to);
+            }
+        });
+        while (!changed.isEmpty()) {
+            int cell = changed.pollFirst();
+            for (Route route : routes) {
+                if (route != null) {
+                    updateVertex(route, cell);
+                    route.plan = null;
+                }
+            }
+        }
+        return plans();
+    }
+
+    private void computeShortestPath(Route route) {
+        IndexedMinHeap open = route.open;
+        while (!open.isEmpty() && open.key(open.peek()) <= bestStoreCost(route)) {
+            int slot = open.pop();
+            int cell = route.cells[slot];
+            route.expanded++;
+            if (route.g[slot] > route.rhs[slot]) {
+                route.g[slot] = route.rhs[slot];
+                storeChanged(route, slot);
+            } else {
+                route.g[slot] = INFINITE;
+                storeChanged(route, slot);
+                updateVertex(route, cell);
+            }
+            updatePredecessors(route, cell);
+        }
+    }
+
+    // Stores settle in cost order because their heuristic is 0, so the search can stop once the
+    // queue has nothing left at or below the cheapest store; equal-cost stores are settled too.
+    private int bestStoreCost(Route route) {
+        return route.bestStore < 0 ? INFINITE : Math.min(route.g[route.bestStore], route.rhs[route.bestStore]);
+    }
+
+    // Keeps route.bestStore current after g or rhs of slot changed. Only the best store getting
+    // dearer needs a look at every store again.
+    private void storeChanged(Route route, int slot) {
+        if (storeDistance[route.cells[slot]] != 0) {
+            return;
+        }
+        int value = Math.min(route.g[slot], route.rhs[slot]);
+        if (value < bestStoreCost(route)) {
+            route.bestStore = slot;
+        } else if (slot == route.bestStore && value > route.bestCost) {
+            route.bestStore = -1;
+            for (int store : stores) {
+                int other = store < 0 ? -1 : route.find(store);
+                if (other >= 0 && Math.min(route.g[other], route.rhs[other]) < bestStoreCost(route)) {
+                    route.bestStore = other;
+                }
+            }
+        }
+        route.bestCost = bestStoreCost(route);
+    }
+
+    private void updateVertex(Route route, int cell) {
+        int slot = route.find(cell);
+        if (cell != route.goal) {
+            long best = INFINITE;
+            int x = cell / n;
+            int y = cell % n;
+            for (int dir = 0; dir < 4; dir++) {
+                int cost = roads.roadCost(cell, dir);
+                if (cost > 0) {
+                    int next = (x + GridGraph.DX[dir]) * n + y + GridGraph.DY[dir];
+                    int g = route.g(next);
+                    if (g != INFINITE) {
+                        best = Math.min(best, (long) cost + g);
+                    }
+                }
+            }
+            // A tunnel back into its own entry costs 0 and would let the cell prop up its own g.
+            int exit = roads.tunnelExit(cell);
+            if (exit >= 0 && exit != cell && route.g(exit) != INFINITE) {
+                best = Math.min(best, (long) tunnelCost(cell, exit) + route.g(exit));
+            }
+            // A cell the route never reached stays out of its tables while it is out of reach.
+            if (slot < 0 && best == INFINITE) {
+                return;
+            }
+            if (slot < 0) {
+                slot = route.slot(cell);
+            }
+            route.rhs[slot] = (int) best;
+            storeChanged(route, slot);
+        }
+        boolean queued = route.open.contains(slot);
+        if (route.g[slot] != route.rhs[slot]) {
+            if (queued) {
+                route.open.update(slot, key(route, slot));
+            } else {
+                route.open.push(slot, key(route, slot));
+            }
+        } else if (queued) {
+            route.open.remove(slot);
+        }
+    }
+
+    // Every cell with a road or tunnel into cell depends on its g.
+    private void updatePredecessors(Route route, int cell) {
+        int x = cell / n;
+        int y = cell % n;
+        for (int dir = 0; dir < 4; dir++) {
+            int px = x + GridGraph.DX[dir];
+            int py = y + GridGraph.DY[dir];
+            if (px >= 0 && px < m && py >= 0 && py < n && roads.roadCost(px * n + py, dir ^ 1) > 0) {
+                updateVertex(route, px * n + py);
+            }
+        }
+        int i = Arrays.binarySearch(tunnelExits, cell);
+        if (i >= 0) {
+            while (i > 0 && tunnelExits[i - 1] == cell) {
+                i--;
+            }
+            for (; i < tunnelExits.length && tunnelExits[i] == cell; i++) {
+                updateVertex(route, tunnelEntries[i]);
+            }
+        }
+    }
+
+    private double key(Route route, int slot) {
+        return (double) Math.min(route.g[slot], route.rhs[slot]) + storeDistance[route.cells[slot]];
+    }
+
+    // Cheapest store, first listed on a tie, then downhill on g to the customer.
+    private Delivery delivery(Route route, int customer) {
+        int best = -1;
+        int bestCost = INFINITE;
+        for (int i = 0; i < stores.length; i++) {
+            int slot = stores[i] < 0 ? -1 : route.find(stores[i]);
+            if (slot >= 0 && route.g[slot] < bestCost && route.g[slot] == route.rhs[slot]) {
+                best = i;
+                bestCost = route.g[slot];
+            }
+        }
+        if (best == -1) {
+            return Delivery.of(-1, customer, null);
+        }
+
+        StringBuilder plan = new StringBuilder();
+        int cell = stores[best];
+        while (cell != route.goal) {
+            int next = -1;
+            int action = -1;
+            int x = cell / n;
+            int y = cell % n;
+            for (int dir = 0; dir < 4 && next < 0; dir++) {
+                int cost = roads.roadCost(cell, dir);
+                int candidate = (x + GridGraph.DX[dir]) * n + y + GridGraph.DY[dir];
+                if (cost > 0 && route.g(candidate) != INFINITE && (long) cost + route.g(candidate) == route.g(cell)) {
+                    next = candidate;
+                    action = dir;
+                }
+            }
+            int exit = roads.tunnelExit(cell);
+            if (next < 0 && exit >= 0 && exit != cell && route.g(exit) != INFINITE
+                    && (long) tunnelCost(cell, exit) + route.g(exit) == route.g(cell)) {
+                next = exit;
+                action = GridGraph.TUNNEL;
+            }
+            if (plan.length() > 0) {
+                plan.append(',');
+            }
+            plan.append(GridGraph.ACTIONS[action]);
+            cell = next;
+        }
+        return new Delivery(best, customer, plan.toString(), bestCost, route.expanded);
+    }
+
+    private int direction(int x1, int y1, int x2, int y2) {
+        if (x1 < 0 || x1 >= m || y1 < 0 || y1 >= n || x2 < 0 || x2 >= m || y2 < 0 || y2 >= n) {
+            return -1;
+        }
+        for (int dir = 0; dir < 4; dir++) {
+            if (x1 + GridGraph.DX[dir] == x2 && y1 + GridGraph.DY[dir] == y2) {
+                return dir;
+            }
+        }
+        return -1;
+    }
+
+    private int cellAt(int x, int y) {
+        return x >= 0 && x < m && y >= 0 && y < n ? x * n + y : -1;
+    }
+
+    private int tunnelCost(int from, int to) {
+        return Math.abs(from / n - to / n) + Math.abs(from % n - to % n);
+    }
+
+    // LPA* state for one customer. Only cells the route has touched get a slot, and slots index
+    // g, rhs and the queue, so memory follows the part of the grid the route explored rather than
+    // the grid itself; a cell without a slot has g = rhs = INFINITE.
+    private static final class Route {
+        final int goal;
+        final IntIntMap slots = new IntIntMap();
+        final IndexedMinHeap open = new IndexedMinHeap(64);
+        int[] cells = new int[64];
+        int[] g = new int[64];
+        int[] rhs = new int[64];
+        // Slot of the store with the lowest min(g, rhs), -1 before any store has one; bestCost is
+        // that value as of the last storeChanged().
+        int bestStore = -1;
+        int bestCost = INFINITE;
+        int expanded;
+        Delivery plan;
+
+        Route(int goal) {
+            this.goal = goal;
+        }
+
+        int find(int cell) {
+            return slots.get(cell);
+        }
+
+        int g(int cell) {
+            int slot = slots.get(cell);
+            return slot < 0 ? INFINITE : g[slot];
+        }
+
+        int slot(int cell) {
+            int slot = slots.get(cell);
+            if (slot < 0) {
+                slot = slots.size();
+                if (slot == cells.length) {
+                    cells = Arrays.copyOf(cells, 2 * slot);
+                    g = Arrays.copyOf(g, 2 * slot);
+                    rhs = Arrays.copyOf(rhs, 2 * slot);
+                    open.grow(2 * slot);
+                }
+                slots.put(cell, slot);
+                cells[slot] = cell;
+                g[slot] = INFINITE;
+                rhs[slot] = INFINITE;
+            }
+            return slot;
+        }
+    }
+}
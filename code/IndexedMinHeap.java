@@ -0,0 +1,150 @@
+package code;
+
+import java.util.Arrays;
+
+// Binary min-heap over ids 0..capacity-1 with a position index, so each id sits in the heap
+// at most once and a cheaper path just moves it up (decrease-key) instead of adding a duplicate.
+final class IndexedMinHeap implements IdQueue {
+
+    private int[] heap;
+    private int[] position;
+    private double[] keys;
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    @Override
+    public double key(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public void push(int id, double key) {
+        keys[id] = key;
+        heap[size] = id;
+        position[id] = size;
+        siftUp(size++);
+    }
+
+    @Override
+    public void decreaseKey(int id, double key) {
+        keys[id] = key;
+        siftUp(position[id]);
+    }
+
+    @Override
+    public int pop() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // Id with the smallest key, left in place; the heap must not be empty.
+    int peek() {
+        return heap[0];
+    }
+
+    // Moves a queued id to any new key, up or down; for searches like LPA* whose keys can grow.
+    void update(int id, double key) {
+        keys[id] = key;
+        siftUp(position[id]);
+        siftDown(position[id]);
+    }
+
+    // Makes room for ids up to capacity - 1, for callers that hand out ids as they go.
+    void grow(int capacity) {
+        int old = heap.length;
+        if (capacity > old) {
+            heap = Arrays.copyOf(heap, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            position = Arrays.copyOf(position, capacity);
+            Arrays.fill(position, old, capacity, -1);
+        }
+    }
+
+    void remove(int id) {
+        int slot = position[id];
+        position[id] = -1;
+        size--;
+        if (slot < size) {
+            int moved = heap[size];
+            heap[slot] = moved;
+            position[moved] = slot;
+            siftUp(slot);
+            siftDown(position[moved]);
+        }
+    }
+
+    // Only touches the ids still queued, so reuse between searches costs O(size) rather than O(capacity).
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot) {
+        int id = heap[slot];
+        double key = keys[id];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            int parentId = heap[parent];
+            if (keys[parentId] <= key) {
+                break;
+            }
+            heap[slot] = parentId;
+            position[parentId] = slot;
+            slot = parent;
+        }
+        heap[slot] = id;
+        position[id] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int id = heap[slot];
+        double key = keys[id];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[slot] = heap[child];
+            position[heap[slot]] = slot;
+            slot = child;
+        }
+        heap[slot] = id;
+        position[id] = slot;
+    }
+}
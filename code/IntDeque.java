@@ -0,0 +1,55 @@
+package code;
+
+// Growable ring buffer of ints; the BF queue and DF stack of node indices.
+final class IntDeque {
+
+    private int[] items = new int[64];
+    private int head;
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    void addLast(int value) {
+        if (size == items.length) {
+            grow();
+        }
+        items[(head + size) & (items.length - 1)] = value;
+        size++;
+    }
+
+    void addFirst(int value) {
+        if (size == items.length) {
+            grow();
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = value;
+        size++;
+    }
+
+    int pollFirst() {
+        int value = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        return value;
+    }
+
+    private void grow() {
+        int[] bigger = new int[items.length * 2];
+        for (int i = 0; i < size; i++) {
+            bigger[i] = items[(head + i) & (items.length - 1)];
+        }
+        items = bigger;
+        head = 0;
+    }
+}
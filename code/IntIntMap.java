@@ -0,0 +1,68 @@
+package code;
+
+import java.util.Arrays;
+
+// Open-addressing map from non-negative int keys to int values, for state that only covers the
+// few cells a search touched instead of the whole grid. No removal; get() answers -1 when absent.
+final class IntIntMap {
+
+    private int[] keys = new int[16];
+    private int[] values = new int[16];
+    private int size;
+
+    IntIntMap() {
+        Arrays.fill(keys, -1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            if (keys[i] < 0) {
+                return -1;
+            }
+        }
+    }
+
+    void put(int key, int value) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] >= 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] < 0) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, -1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] >= 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    // Neighbouring cells have neighbouring ids, so spread them before masking.
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
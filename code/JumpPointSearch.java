@@ -0,0 +1,151 @@
+package code;
+
+import java.util.BitSet;
+
+// A* over jump points for the JPS strategy. Inside the uniform interior (GridGraph.uniformInterior())
+// it uses the 4-connected pruning rules: a cell reached sideways only carries on straight, a cell
+// reached vertically carries on and may turn sideways. Every other cell is expanded in full over
+// the real graph, so blocked roads, traffic costs and tunnels are never jumped over. A jump stops
+// at the goal, at any cell outside the interior, and on a vertical run wherever a sideways scan
+// would hit one of those.
+final class JumpPointSearch {
+
+    private final GridGraph graph;
+    private final BitSet interior;
+    private final int goal;
+    private SearchLabels labels;
+    private Successors out;
+
+    JumpPointSearch(GridGraph graph, int goal) {
+        this.graph = graph;
+        this.interior = graph.uniformInterior();
+        this.goal = goal;
+    }
+
+    // Same "plan;cost;expanded" answer as the other strategies; expanded counts jump points.
+    // Queue and labels come from the caller's workspace. Gives up once every open f exceeds costBound.
+    String search(SearchWorkspace ws, int start, int costBound) {
+        IndexedMinHeap open = ws.heap();
+        labels = ws.labels();
+        out = ws.successors;
+        labels.set(start, 0, 0, -1, NodePool.NO_ACTION);
+        open.push(start, heuristic(start));
+        int expanded = 0;
+
+        try {
+            while (!open.isEmpty()) {
+                int cell = open.pop();
+                if (open.key(cell) > costBound) {
+                    break;
+                }
+                if (cell == goal) {
+                    return pathTo(cell, expanded);
+                }
+                labels.settle(cell);
+                expanded++;
+
+                successors(cell, labels.action(cell));
+                for (int i = 0; i < out.size(); i++) {
+                    int next = out.state(i);
+                    if (labels.settled(next)) {
+                        continue;
+                    }
+                    int pathCost = labels.cost(cell) + out.cost(i);
+                    if (!labels.reached(next)) {
+                        open.push(next, pathCost + heuristic(next));
+                    } else if (pathCost < labels.cost(next)) {
+                        open.decreaseKey(next, pathCost + heuristic(next));
+                    } else {
+                        continue;
+                    }
+                    labels.set(next, pathCost, labels.depth(cell) + 1, cell, out.action(i));
+                }
+            }
+        } finally {
+            open.clear();
+        }
+        return "NoPath;0;" + expanded;
+    }
+
+    // Fills out with the jump points reachable from cell; cost is the number of unit steps jumped.
+    private void successors(int cell, byte arrivedBy) {
+        out.clear();
+        if (interior.get(cell) && arrivedBy != NodePool.NO_ACTION) {
+            jump(cell, arrivedBy, 0);
+            if (arrivedBy == GridGraph.UP || arrivedBy == GridGraph.DOWN) {
+                jump(cell, GridGraph.LEFT, 0);
+                jump(cell, GridGraph.RIGHT, 0);
+            }
+            return;
+        }
+        for (int edge = graph.begin(cell), end = graph.end(cell); edge < end; edge++) {
+            byte action = graph.action(edge);
+            int next = graph.target(edge);
+            if (action != GridGraph.TUNNEL && next != goal && interior.get(next)) {
+                jump(next, action, graph.cost(edge));
+            } else {
+                out.add(next, graph.cost(edge), action);
+            }
+        }
+    }
+
+    // Walks from cell in direction dir (cell itself already paid for with cost) and adds the first
+    // jump point found, if any. Only called on interior cells, whose roads all cost 1.
+    private void jump(int cell, byte dir, int cost) {
+        int x = cell / graph.n;
+        int y = cell % graph.n;
+        boolean vertical = dir == GridGraph.UP || dir == GridGraph.DOWN;
+        while (true) {
+            if (cost > 0 && (cell == goal || !interior.get(cell))) {
+                break;
+            }
+            if (cost > 0 && vertical && (scan(x, y, GridGraph.LEFT) || scan(x, y, GridGraph.RIGHT))) {
+                break;
+            }
+            x += GridGraph.DX[dir];
+            y += GridGraph.DY[dir];
+            if (x < 0 || x >= graph.m || y < 0 || y >= graph.n) {
+                return;
+            }
+            cell = graph.cell(x, y);
+            cost++;
+        }
+        out.add(cell, cost, dir);
+    }
+
+    // True when a sideways run from (x, y) reaches the goal or leaves the interior before the edge.
+    private boolean scan(int x, int y, byte dir) {
+        while (true) {
+            x += GridGraph.DX[dir];
+            if (x < 0 || x >= graph.m) {
+                return false;
+            }
+            int cell = graph.cell(x, y);
+            if (cell == goal || !interior.get(cell)) {
+                return true;
+            }
+        }
+    }
+
+    // Manhattan distance; tunnels cost exactly that, so it stays consistent.
+    private int heuristic(int cell) {
+        return Math.abs(cell / graph.n - goal / graph.n) + Math.abs(cell % graph.n - goal % graph.n);
+    }
+
+    // Expands each jump back into single steps; a jump is a straight run, a tunnel is one action.
+    private String pathTo(int cell, int expanded) {
+        int cost = labels.cost(cell);
+        StringBuilder plan = new StringBuilder();
+        while (labels.link(cell) >= 0) {
+            int parent = labels.link(cell);
+            byte action = labels.action(cell);
+            int steps = action == GridGraph.TUNNEL ? 1
+                    : Math.abs(cell / graph.n - parent / graph.n) + Math.abs(cell % graph.n - parent % graph.n);
+            for (int i = 0; i < steps; i++) {
+                plan.insert(0, plan.length() > 0 ? GridGraph.ACTIONS[action] + "," : GridGraph.ACTIONS[action]);
+            }
+            cell = parent;
+        }
+        return plan + ";" + cost + ";" + expanded;
+    }
+}
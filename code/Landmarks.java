@@ -0,0 +1,126 @@
+package code;
+
+import java.util.Arrays;
+
+// ALT preprocessing for one GridGraph: exact costs from and to a handful of landmark cells, so
+// the triangle inequality gives lower bounds on the cost between any two cells. Roads can cost
+// differently each way, so both directions are kept.
+final class Landmarks {
+
+    static final int UNREACHABLE = -1;
+    // Enough for the max over bounds to beat Manhattan on most city maps without bloating memory.
+    static final int DEFAULT_COUNT = 8;
+
+    private final int[] cells;
+    private final int[][] from;
+    private final int[][] to;
+
+    private Landmarks(int[] cells, int[][] from, int[][] to) {
+        this.cells = cells;
+        this.from = from;
+        this.to = to;
+    }
+
+    // Farthest-first selection: each new landmark is the cell worst covered by the ones already
+    // picked, preferring cells none of them reach so every component gets one.
+    static Landmarks build(GridGraph graph, int count) {
+        int total = graph.cellCount();
+        count = Math.min(count, total);
+        int[] cells = new int[count];
+        int[][] from = new int[count][];
+        int[][] to = new int[count][];
+        int[] nearest = new int[total];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        boolean[] taken = new boolean[total];
+        GridGraph reversed = graph.reversed();
+        int next = farthest(distances(graph, 0), taken);
+
+        for (int i = 0; i < count; i++) {
+            cells[i] = next;
+            taken[next] = true;
+            from[i] = distances(graph, next);
+            to[i] = distances(reversed, next);
+            for (int cell = 0; cell < total; cell++) {
+                if (from[i][cell] != UNREACHABLE) {
+                    nearest[cell] = Math.min(nearest[cell], from[i][cell]);
+                }
+            }
+            next = farthest(nearest, taken);
+        }
+        return new Landmarks(cells, from, to);
+    }
+
+    // Lower bound on the cost from cell to goal: the best triangle bound over all landmarks, or
+    // UNREACHABLE when some landmark proves goal cannot be reached from cell at all.
+    int estimate(int cell, int goal) {
+        int best = 0;
+        for (int i = 0; i < cells.length; i++) {
+            int[] out = from[i];
+            int[] back = to[i];
+            if (out[cell] != UNREACHABLE) {
+                if (out[goal] == UNREACHABLE) {
+                    return UNREACHABLE;
+                }
+                best = Math.max(best, out[goal] - out[cell]);
+            }
+            if (back[goal] != UNREACHABLE) {
+                if (back[cell] == UNREACHABLE) {
+                    return UNREACHABLE;
+                }
+                best = Math.max(best, back[cell] - back[goal]);
+            }
+        }
+        return best;
+    }
+
+    // Rough heap bytes held by the tables.
+    long footprint() {
+        return 8L * cells.length * (from.length == 0 ? 0 : from[0].length);
+    }
+
+    // Cell with the largest value, where unreachable counts as farthest of all; skips taken cells.
+    private static int farthest(int[] costs, boolean[] taken) {
+        int best = 0;
+        long bestCost = -2;
+        for (int cell = 0; cell < costs.length; cell++) {
+            if (taken[cell]) {
+                continue;
+            }
+            long cost = costs[cell] == UNREACHABLE || costs[cell] == Integer.MAX_VALUE ? Long.MAX_VALUE : costs[cell];
+            if (cost > bestCost) {
+                best = cell;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    // Plain Dijkstra over the whole graph; UNREACHABLE where source cannot get to.
+    private static int[] distances(GridGraph graph, int source) {
+        int[] cost = new int[graph.cellCount()];
+        Arrays.fill(cost, UNREACHABLE);
+        IndexedMinHeap queue = new IndexedMinHeap(cost.length);
+        boolean[] settled = new boolean[cost.length];
+        cost[source] = 0;
+        queue.push(source, 0);
+        while (!queue.isEmpty()) {
+            int cell = queue.pop();
+            settled[cell] = true;
+            for (int edge = graph.begin(cell), end = graph.end(cell); edge < end; edge++) {
+                int next = graph.target(edge);
+                int pathCost = cost[cell] + graph.cost(edge);
+                if (settled[next]) {
+                    continue;
+                }
+                if (cost[next] == UNREACHABLE) {
+                    cost[next] = pathCost;
+                    queue.push(next, pathCost);
+                } else if (pathCost < cost[next]) {
+                    cost[next] = pathCost;
+                    queue.decreaseKey(next, pathCost);
+                }
+            }
+        }
+        return cost;
+    }
+}
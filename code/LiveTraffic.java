@@ -0,0 +1,38 @@
+package code;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// A map whose traffic keeps changing while searches run on it. Readers take current() and plan on
+// that version start to finish; writers publish whole new versions, so neither side ever waits on
+// or sees half of the other. A version nobody holds is just garbage, graph and trees included.
+public final class LiveTraffic {
+
+    private final AtomicReference<TrafficSnapshot> current;
+
+    LiveTraffic(TrafficSnapshot initial) {
+        this.current = new AtomicReference<>(initial);
+    }
+
+    public TrafficSnapshot current() {
+        return current.get();
+    }
+
+    // Applies x1,y1,x2,y2,cost records on top of the latest version and makes the result current.
+    // Concurrent writers retry against each other's versions, so no delta is lost; a malformed
+    // delta throws before anything is published.
+    public TrafficSnapshot publish(String deltas) {
+        TrafficSnapshot before;
+        TrafficSnapshot after;
+        do {
+            before = current.get();
+            after = before.with(deltas);
+        } while (!current.compareAndSet(before, after));
+        return after;
+    }
+
+    // Routes on whatever version is current when the call starts.
+    public List<Delivery> solve(DeliveryQuery query) {
+        return current().solve(query);
+    }
+}
@@ -0,0 +1,202 @@
+package code;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Small thread-safe LRU bounded both by entry count and by total weight (whatever unit the weigher
+// uses). Loaders run outside the lock, so two threads missing on the same key may both build it.
+// The weight limit can be a Budget shared with other caches, in which case the least recently
+// used entry across all of them goes first, and only the entry just put or reweigh()ed is safe.
+// Each entry is charged what it weighed at that point; the weigher never runs under a cache lock.
+public final class LruCache<K, V> {
+
+    private final int maxEntries;
+    private final Budget budget;
+    private final ToLongFunction<? super V> weigher;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LruCache(int maxEntries, long maxWeight, ToLongFunction<? super V> weigher) {
+        this(maxEntries, new Budget(maxWeight), weigher);
+    }
+
+    LruCache(int maxEntries, Budget budget, ToLongFunction<? super V> weigher) {
+        this.maxEntries = maxEntries;
+        this.budget = budget;
+        this.weigher = weigher;
+        budget.caches.add(this);
+    }
+
+    public V get(K key, Supplier<? extends V> loader) {
+        synchronized (this) {
+            Entry<V> cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                cached.used = budget.clock.incrementAndGet();
+                return cached.value;
+            }
+            misses++;
+        }
+        V loaded = loader.get();
+        long loadedWeight = weigher.applyAsLong(loaded);
+        long stamp;
+        synchronized (this) {
+            Entry<V> raced = entries.get(key);
+            if (raced != null) {
+                return raced.value;
+            }
+            stamp = budget.clock.incrementAndGet();
+            entries.put(key, new Entry<>(loaded, loadedWeight, stamp));
+            charge(loadedWeight);
+            while (entries.size() > maxEntries) {
+                evictEldest();
+            }
+        }
+        budget.enforce(stamp);
+        return loaded;
+    }
+
+    // Weighs key's value again, for values that grow after they were cached; no-op when absent.
+    void reweigh(K key) {
+        V value;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return;
+            }
+            value = entry.value;
+        }
+        long now = weigher.applyAsLong(value);
+        long stamp;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null || entry.value != value) {
+                return;
+            }
+            charge(now - entry.weight);
+            entry.weight = now;
+            stamp = entry.used = budget.clock.incrementAndGet();
+        }
+        budget.enforce(stamp);
+    }
+
+    public synchronized void clear() {
+        charge(-weight);
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "entries=" + entries.size() + ", weight=" + weight + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+    }
+
+    private void charge(long delta) {
+        weight += delta;
+        budget.used.addAndGet(delta);
+    }
+
+    private void evictEldest() {
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        Entry<V> entry = eldest.next();
+        eldest.remove();
+        charge(-entry.weight);
+        evictions++;
+    }
+
+    // When the eldest entry was last used, or Long.MAX_VALUE when there is nothing to give up
+    // besides the entry stamped keep.
+    private synchronized long eldestUse(long keep) {
+        if (entries.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        long used = entries.values().iterator().next().used;
+        return used == keep ? Long.MAX_VALUE : used;
+    }
+
+    // Evicts the eldest entry if it is still the one last used at stamp.
+    private synchronized boolean evictEldest(long stamp) {
+        if (!entries.isEmpty() && entries.values().iterator().next().used == stamp) {
+            evictEldest();
+            return true;
+        }
+        return false;
+    }
+
+    // One weight limit for any number of caches. Whichever cache pushes the total over it evicts,
+    // once its own lock is released, the least recently used entry of all of them until it fits
+    // or only the entry that pushed it over is left.
+    static final class Budget {
+        private final long limit;
+        private final AtomicLong used = new AtomicLong();
+        private final AtomicLong clock = new AtomicLong();
+        private final List<LruCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+        Budget(long limit) {
+            this.limit = limit;
+        }
+
+        long used() {
+            return used.get();
+        }
+
+        private void enforce(long keep) {
+            while (used.get() > limit) {
+                LruCache<?, ?> victim = null;
+                long oldest = Long.MAX_VALUE;
+                for (LruCache<?, ?> cache : caches) {
+                    long stamp = cache.eldestUse(keep);
+                    if (stamp < oldest) {
+                        oldest = stamp;
+                        victim = cache;
+                    }
+                }
+                if (victim == null) {
+                    return;
+                }
+                // Losing a race just means looking again.
+                victim.evictEldest(oldest);
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        long weight;
+        long used;
+
+        Entry(V value, long weight, long used) {
+            this.value = value;
+            this.weight = weight;
+            this.used = used;
+        }
+    }
+}
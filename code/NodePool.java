@@ -0,0 +1,72 @@
+package code;
+
+import java.util.Arrays;
+
+// Search tree for encoded searches kept as parallel primitive arrays instead of linked Node
+// objects: a node is just an index, parent links are indices, and reset() keeps the capacity.
+final class NodePool {
+
+    static final byte NO_ACTION = -1;
+
+    private int[] states;
+    private int[] parents;
+    private int[] costs;
+    private int[] depths;
+    private byte[] actions;
+    private int size;
+
+    NodePool(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        states = new int[capacity];
+        parents = new int[capacity];
+        costs = new int[capacity];
+        depths = new int[capacity];
+        actions = new byte[capacity];
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    int add(int state, int parent, int cost, byte action) {
+        if (size == states.length) {
+            int capacity = size + (size >> 1);
+            states = Arrays.copyOf(states, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            actions = Arrays.copyOf(actions, capacity);
+        }
+        states[size] = state;
+        set(size, parent, cost, action);
+        return size++;
+    }
+
+    // Re-parents a node that has no children yet (a queued one that just found a cheaper path).
+    void set(int node, int parent, int cost, byte action) {
+        parents[node] = parent;
+        costs[node] = cost;
+        depths[node] = parent < 0 ? 0 : depths[parent] + 1;
+        actions[node] = action;
+    }
+
+    int state(int node) {
+        return states[node];
+    }
+
+    int parent(int node) {
+        return parents[node];
+    }
+
+    int cost(int node) {
+        return costs[node];
+    }
+
+    int depth(int node) {
+        return depths[node];
+    }
+
+    byte action(int node) {
+        return actions[node];
+    }
+}
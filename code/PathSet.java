@@ -0,0 +1,73 @@
+package code;
+
+import java.util.Arrays;
+
+// The states on a depth-first path, for asking whether a successor would close a cycle. Ids come
+// off in the reverse of the order they went on, so pop() can just empty the slot: nothing pushed
+// before it ever probed past that slot. Size follows the depth of the path, not the state space.
+final class PathSet {
+
+    private int[] table = new int[32];
+    // Table slot of each id on the path, in push order.
+    private int[] slots = new int[16];
+    private int depth;
+
+    PathSet() {
+        Arrays.fill(table, -1);
+    }
+
+    void clear() {
+        while (depth > 0) {
+            pop();
+        }
+    }
+
+    boolean contains(int id) {
+        int mask = table.length - 1;
+        for (int i = mix(id) & mask; table[i] >= 0; i = (i + 1) & mask) {
+            if (table[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // id must not be on the path already.
+    void push(int id) {
+        if (depth == slots.length) {
+            grow();
+        }
+        slots[depth++] = place(id);
+    }
+
+    void pop() {
+        table[slots[--depth]] = -1;
+    }
+
+    private int place(int id) {
+        int mask = table.length - 1;
+        int i = mix(id) & mask;
+        while (table[i] >= 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = id;
+        return i;
+    }
+
+    // Re-placing in push order keeps pop() safe.
+    private void grow() {
+        int[] old = table;
+        table = new int[old.length * 2];
+        Arrays.fill(table, -1);
+        slots = Arrays.copyOf(slots, slots.length * 2);
+        for (int i = 0; i < depth; i++) {
+            slots[i] = place(old[slots[i]]);
+        }
+    }
+
+    // Neighbouring cells have neighbouring ids, so spread them before masking.
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
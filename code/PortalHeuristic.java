@@ -0,0 +1,127 @@
+package code;
+
+import java.util.Arrays;
+
+// Heuristic type 4: exact cost to the target in a relaxed copy of the grid where every road costs
+// the cheapest road on the map and nothing is blocked, but tunnels are kept. A tunnel costs its
+// Manhattan length, so it only beats walking once roads cost more than 1; this bound sees that.
+// Each target only gets the costs from the tunnel ends; a cell's bound is worked out from those
+// when A* asks for it.
+final class PortalHeuristic {
+
+    private final int n;
+    private final int cells;
+    private final int minRoadCost;
+    // Tunnel ends, and the tunnels between them as index pairs into portals.
+    private final int[] portals;
+    private final int[] tunnelFrom;
+    private final int[] tunnelTo;
+    private final int[] tunnelCost;
+
+    PortalHeuristic(GridGraph graph) {
+        this.n = graph.n;
+        this.cells = graph.cellCount();
+        int minRoad = Integer.MAX_VALUE;
+        int tunnels = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            for (int edge = graph.begin(cell), end = graph.end(cell); edge < end; edge++) {
+                if (graph.action(edge) == GridGraph.TUNNEL) {
+                    tunnels++;
+                } else {
+                    minRoad = Math.min(minRoad, graph.cost(edge));
+                }
+            }
+        }
+        this.minRoadCost = minRoad == Integer.MAX_VALUE ? 1 : minRoad;
+
+        int[] ends = new int[2 * tunnels];
+        int[] from = new int[tunnels];
+        int[] to = new int[tunnels];
+        int[] costs = new int[tunnels];
+        int count = 0;
+        int tunnel = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            for (int edge = graph.begin(cell), end = graph.end(cell); edge < end; edge++) {
+                if (graph.action(edge) == GridGraph.TUNNEL) {
+                    from[tunnel] = indexOf(ends, count, cell);
+                    if (from[tunnel] < 0) {
+                        ends[count] = cell;
+                        from[tunnel] = count++;
+                    }
+                    to[tunnel] = indexOf(ends, count, graph.target(edge));
+                    if (to[tunnel] < 0) {
+                        ends[count] = graph.target(edge);
+                        to[tunnel] = count++;
+                    }
+                    costs[tunnel++] = graph.cost(edge);
+                }
+            }
+        }
+        this.portals = Arrays.copyOf(ends, count);
+        this.tunnelFrom = from;
+        this.tunnelTo = to;
+        this.tunnelCost = costs;
+    }
+
+    // Relaxed cost from cell to target, given that target's portalCosts(); O(portals) per call, so a
+    // search only pays for the cells it actually looks at.
+    int estimate(int cell, int target, int[] viaPortal) {
+        int best = minRoadCost * manhattan(cell, target);
+        for (int p = 0; p < portals.length; p++) {
+            int walk = minRoadCost * manhattan(cell, portals[p]);
+            if (walk + viaPortal[p] < best) {
+                best = walk + viaPortal[p];
+            }
+        }
+        return best;
+    }
+
+    // Relaxed cost from each tunnel end to target: Dijkstra over the (small, dense) portal graph
+    // where any two points are linked by a walk and each tunnel adds its own edge.
+    int[] portalCosts(int target) {
+        int count = portals.length;
+        int[] cost = new int[count];
+        boolean[] done = new boolean[count];
+        for (int p = 0; p < count; p++) {
+            cost[p] = minRoadCost * manhattan(portals[p], target);
+        }
+        for (int round = 0; round < count; round++) {
+            int best = -1;
+            for (int p = 0; p < count; p++) {
+                if (!done[p] && (best < 0 || cost[p] < cost[best])) {
+                    best = p;
+                }
+            }
+            done[best] = true;
+            for (int p = 0; p < count; p++) {
+                if (!done[p]) {
+                    cost[p] = Math.min(cost[p], minRoadCost * manhattan(portals[p], portals[best]) + cost[best]);
+                }
+            }
+            for (int t = 0; t < tunnelTo.length; t++) {
+                if (tunnelTo[t] == best && !done[tunnelFrom[t]]) {
+                    cost[tunnelFrom[t]] = Math.min(cost[tunnelFrom[t]], tunnelCost[t] + cost[best]);
+                }
+            }
+        }
+        return cost;
+    }
+
+    // Rough heap bytes held by the tunnel tables.
+    long footprint() {
+        return 4L * (portals.length + tunnelFrom.length + tunnelTo.length + tunnelCost.length);
+    }
+
+    private int manhattan(int a, int b) {
+        return Math.abs(a / n - b / n) + Math.abs(a % n - b % n);
+    }
+
+    private static int indexOf(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,131 @@
+package code;
+
+import java.util.Arrays;
+
+// Monotone integer heap with no bound on key spread: bucket i holds keys whose highest bit
+// differing from the last popped key is bit i - 1, and bucket 0 holds keys equal to it.
+// Popping only ever redistributes one bucket downwards, so each id moves at most 64 times.
+final class RadixHeap implements IdQueue {
+
+    private static final int BUCKETS = 65;
+
+    private final long[] keys;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;
+    private final int[] heads = new int[BUCKETS];
+    private long last;
+    private int size;
+
+    RadixHeap(int capacity) {
+        this.keys = new long[capacity];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.bucketOf = new int[capacity];
+        Arrays.fill(bucketOf, -1);
+        Arrays.fill(heads, -1);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return bucketOf[id] >= 0;
+    }
+
+    @Override
+    public double key(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public void push(int id, double key) {
+        long k = (long) key;
+        if (k < last) {
+            throw new IllegalStateException("Key " + k + " below last popped key " + last + "; heuristic is not consistent");
+        }
+        keys[id] = k;
+        link(id, bucket(k));
+        size++;
+    }
+
+    @Override
+    public void decreaseKey(int id, double key) {
+        unlink(id);
+        size--;
+        push(id, key);
+    }
+
+    @Override
+    public int pop() {
+        if (heads[0] < 0) {
+            int bucket = 1;
+            while (heads[bucket] < 0) {
+                bucket++;
+            }
+            long min = Long.MAX_VALUE;
+            for (int id = heads[bucket]; id >= 0; id = next[id]) {
+                min = Math.min(min, keys[id]);
+            }
+            last = min;
+            int id = heads[bucket];
+            heads[bucket] = -1;
+            for (int following; id >= 0; id = following) {
+                following = next[id];
+                link(id, bucket(keys[id]));
+            }
+        }
+        int id = heads[0];
+        unlink(id);
+        size--;
+        return id;
+    }
+
+    @Override
+    public void clear() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            for (int id = heads[bucket]; id >= 0; id = next[id]) {
+                bucketOf[id] = -1;
+            }
+            heads[bucket] = -1;
+        }
+        last = 0;
+        size = 0;
+    }
+
+    private int bucket(long key) {
+        return key == last ? 0 : 64 - Long.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void link(int id, int bucket) {
+        int head = heads[bucket];
+        next[id] = head;
+        prev[id] = -1;
+        if (head >= 0) {
+            prev[head] = id;
+        }
+        heads[bucket] = id;
+        bucketOf[id] = bucket;
+    }
+
+    private void unlink(int id) {
+        int bucket = bucketOf[id];
+        if (prev[id] >= 0) {
+            next[prev[id]] = next[id];
+        } else {
+            heads[bucket] = next[id];
+        }
+        if (next[id] >= 0) {
+            prev[next[id]] = prev[id];
+        }
+        bucketOf[id] = -1;
+    }
+}
@@ -0,0 +1,64 @@
+package code;
+
+// Per-state labels for one direction of a bidirectional search: cost, hop depth, the neighbouring
+// state toward that direction's root, and the forward action on that edge. Entries are stamped
+// with the current epoch, so reset() is O(1) and stale labels simply read as unreached.
+final class SearchLabels {
+
+    private final int[] costs;
+    private final int[] depths;
+    private final int[] links;
+    private final byte[] actions;
+    private final int[] reachedIn;
+    private final int[] settledIn;
+    private int epoch = 1;
+
+    SearchLabels(int states) {
+        costs = new int[states];
+        depths = new int[states];
+        links = new int[states];
+        actions = new byte[states];
+        reachedIn = new int[states];
+        settledIn = new int[states];
+    }
+
+    void reset() {
+        epoch++;
+    }
+
+    boolean reached(int state) {
+        return reachedIn[state] == epoch;
+    }
+
+    boolean settled(int state) {
+        return settledIn[state] == epoch;
+    }
+
+    void settle(int state) {
+        settledIn[state] = epoch;
+    }
+
+    void set(int state, int cost, int depth, int link, byte action) {
+        costs[state] = cost;
+        depths[state] = depth;
+        links[state] = link;
+        actions[state] = action;
+        reachedIn[state] = epoch;
+    }
+
+    int cost(int state) {
+        return costs[state];
+    }
+
+    int depth(int state) {
+        return depths[state];
+    }
+
+    int link(int state) {
+        return links[state];
+    }
+
+    byte action(int state) {
+        return actions[state];
+    }
+}
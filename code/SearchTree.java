@@ -0,0 +1,65 @@
+package code;
+
+import java.util.Arrays;
+
+// Result of an exhaustive search from one root: per state the settled cost (-1 = unreachable),
+// parent state, action taken into it, and the expanded count at the moment it was popped.
+final class SearchTree {
+
+    private final int[] costs;
+    private final int[] parents;
+    private final int[] expandedAt;
+    private final byte[] actions;
+    private int totalExpanded;
+
+    SearchTree(int states) {
+        costs = new int[states];
+        parents = new int[states];
+        expandedAt = new int[states];
+        actions = new byte[states];
+        Arrays.fill(costs, -1);
+    }
+
+    void settle(int state, int parent, byte action, int cost, int expanded) {
+        costs[state] = cost;
+        parents[state] = parent;
+        actions[state] = action;
+        expandedAt[state] = expanded;
+    }
+
+    void seal(int expanded) {
+        totalExpanded = expanded;
+    }
+
+    boolean reached(int state) {
+        return costs[state] >= 0;
+    }
+
+    int cost(int state) {
+        return costs[state];
+    }
+
+    int expandedAt(int state) {
+        return expandedAt[state];
+    }
+
+    int totalExpanded() {
+        return totalExpanded;
+    }
+
+    byte[] actionsTo(int state) {
+        int depth = 0;
+        for (int cursor = state; parents[cursor] >= 0; cursor = parents[cursor]) {
+            depth++;
+        }
+        byte[] path = new byte[depth];
+        for (int i = depth - 1, cursor = state; i >= 0; i--, cursor = parents[cursor]) {
+            path[i] = actions[cursor];
+        }
+        return path;
+    }
+
+    long footprint() {
+        return 13L * costs.length;
+    }
+}
@@ -0,0 +1,100 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Scratch memory for encoded searches over one domain size. Everything here is reset, not
+// reallocated, between searches; the priority queues are created on first use.
+final class SearchWorkspace {
+
+    final int states;
+    final NodePool nodes;
+    final BitSet closed;
+    // Goals a multi-goal sweep has not popped yet.
+    final BitSet goals;
+    // Pool index of the queued node for each state, -1 when the state is not queued.
+    final int[] openNode;
+    final IntDeque deque = new IntDeque();
+    final Successors successors = new Successors();
+    // One successor buffer per depth for the depth-first IDA* stack, grown on demand.
+    private final List<Successors> levels = new ArrayList<>();
+    int expanded;
+    private IndexedMinHeap heap;
+    private BucketQueue buckets;
+    private RadixHeap radix;
+    private SearchLabels labels;
+    private TranspositionTable transpositions;
+    private SearchWorkspace partner;
+
+    SearchWorkspace(int states) {
+        this.states = states;
+        this.nodes = new NodePool(Math.min(states, 1 << 16));
+        this.closed = new BitSet(states);
+        this.goals = new BitSet(states);
+        this.openNode = new int[states];
+        Arrays.fill(openNode, -1);
+    }
+
+    void reset() {
+        expanded = 0;
+        nodes.reset();
+        closed.clear();
+        goals.clear();
+        deque.clear();
+    }
+
+    IndexedMinHeap heap() {
+        if (heap == null) {
+            heap = new IndexedMinHeap(states);
+        }
+        return heap;
+    }
+
+    BucketQueue buckets(int span) {
+        if (buckets == null || buckets.span() < span) {
+            buckets = new BucketQueue(states, span);
+        }
+        return buckets;
+    }
+
+    Successors level(int depth) {
+        while (levels.size() <= depth) {
+            levels.add(new Successors());
+        }
+        return levels.get(depth);
+    }
+
+    // Backward half of a bidirectional search; same size, its own queues and labels.
+    SearchWorkspace partner() {
+        if (partner == null) {
+            partner = new SearchWorkspace(states);
+        }
+        partner.reset();
+        return partner;
+    }
+
+    SearchLabels labels() {
+        if (labels == null) {
+            labels = new SearchLabels(states);
+        }
+        labels.reset();
+        return labels;
+    }
+
+    // Costs seen in the current IDA* pass; the caller clears it between passes.
+    TranspositionTable transpositions() {
+        if (transpositions == null) {
+            transpositions = new TranspositionTable(states);
+        }
+        return transpositions;
+    }
+
+    RadixHeap radix() {
+        if (radix == null) {
+            radix = new RadixHeap(states);
+        }
+        return radix;
+    }
+}
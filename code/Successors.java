@@ -0,0 +1,45 @@
+package code;
+
+import java.util.Arrays;
+
+// Reusable out-parameter for GenericSearch.expandEncoded(): the search clears it, the domain
+// add()s one entry per successor, and the arrays only ever grow, so steady state allocates nothing.
+public final class Successors {
+
+    private int[] states = new int[8];
+    private int[] costs = new int[8];
+    private byte[] actions = new byte[8];
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int state, int cost, byte action) {
+        if (size == states.length) {
+            states = Arrays.copyOf(states, size * 2);
+            costs = Arrays.copyOf(costs, size * 2);
+            actions = Arrays.copyOf(actions, size * 2);
+        }
+        states[size] = state;
+        costs[size] = cost;
+        actions[size] = action;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int state(int i) {
+        return states[i];
+    }
+
+    public int cost(int i) {
+        return costs[i];
+    }
+
+    public byte action(int i) {
+        return actions[i];
+    }
+}
@@ -0,0 +1,200 @@
+package code;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+// One immutable version of a live map's traffic. Entries sit in tiles of TILE_CELLS consecutive
+// cells; with() copies only the tiles a delta touches and shares the rest with the version it came
+// from, so publishing is cheap and never disturbs a search still reading an older version. The
+// compiled graph is shared too where it can be: a version whose delta only re-prices open roads
+// patches the last compiled graph, sharing its rows and every cost chunk the delta leaves alone.
+// Opening or blocking a road changes the rows, so that version compiles from scratch. Tables derived from
+// costs (UC trees, landmarks, the hierarchy, portals) are per version and built on first use; they
+// hang off the version itself and go away with it once no search holds it any more.
+public final class TrafficSnapshot {
+
+    private static final int UNSET = Integer.MIN_VALUE;
+    static final int TILE_CELLS = 4096;
+
+    final int m;
+    final int n;
+    private final long version;
+    // fromX,fromY,toX,toY per tunnel direction, shared by every version of the map.
+    private final int[] tunnels;
+    // Raw traffic entry per (cell, direction) like GridGraph.Builder keeps them; null tiles have none.
+    private final int[][] tiles;
+    private final LruCache<Integer, SearchTree> trees = new LruCache<>(64, 128L << 20, SearchTree::footprint);
+    private GridGraph graph;
+    // Until graph() runs: the newest compiled graph of an older version, and the road slots
+    // (cell * 4 + dir) whose cost may have moved since. Dropped once this version has its own.
+    private GridGraph base;
+    private int[] changed;
+    private int changedCount;
+
+    private TrafficSnapshot(int m, int n, long version, int[] tunnels, int[][] tiles) {
+        this.m = m;
+        this.n = n;
+        this.version = version;
+        this.tunnels = tunnels;
+        this.tiles = tiles;
+    }
+
+    static TrafficSnapshot of(int m, int n, int[] tunnels, String traffic) {
+        TrafficSnapshot empty = new TrafficSnapshot(m, n, 0, tunnels, new int[(m * n + TILE_CELLS - 1) / TILE_CELLS][]);
+        return empty.apply(traffic, 0);
+    }
+
+    // Numbered from 0 for the initial traffic, one up per publish.
+    public long version() {
+        return version;
+    }
+
+    // Routes one query on exactly this version, whatever gets published meanwhile.
+    public List<Delivery> solve(DeliveryQuery query) {
+        return DeliverySearch.solve(this, query);
+    }
+
+    // Next version with x1,y1,x2,y2,cost records on top of this one; later records win, as in the
+    // traffic string. Records that cannot be driven are dropped, like GridGraph.Builder does.
+    TrafficSnapshot with(String deltas) {
+        return apply(deltas, version + 1);
+    }
+
+    private TrafficSnapshot apply(String deltas, long nextVersion) {
+        int[][] next = tiles.clone();
+        boolean[] copied = new boolean[tiles.length];
+        IntDeque touched = new IntDeque();
+        DeliverySearch.parseTraffic(deltas, (x1, y1, x2, y2, cost) -> {
+            if (!inside(x1, y1) || !inside(x2, y2)) {
+                return;
+            }
+            for (int dir = 0; dir < 4; dir++) {
+                if (x1 + GridGraph.DX[dir] == x2 && y1 + GridGraph.DY[dir] == y2) {
+                    int cell = x1 * n + y1;
+                    int tile = cell / TILE_CELLS;
+                    if (!copied[tile]) {
+                        next[tile] = tiles[tile] == null ? emptyTile() : tiles[tile].clone();
+                        copied[tile] = true;
+                    }
+                    next[tile][(cell % TILE_CELLS) * 4 + dir] = cost;
+                    // The road back falls back to this entry when it has none of its own.
+                    touched.addLast(cell * 4 + dir);
+                    touched.addLast((x2 * n + y2) * 4 + (dir ^ 1));
+                    break;
+                }
+            }
+        });
+        TrafficSnapshot result = new TrafficSnapshot(m, n, nextVersion, tunnels, next);
+        synchronized (this) {
+            if (graph != null) {
+                result.base = graph;
+            } else if (base != null) {
+                result.base = base;
+                result.changed = Arrays.copyOf(changed, changedCount + touched.size());
+                result.changedCount = changedCount;
+            }
+        }
+        // Past a few slots per tile, patching saves nothing over compiling afresh.
+        if (result.base != null && result.changedCount + touched.size() <= 64 * tiles.length) {
+            if (result.changed == null) {
+                result.changed = new int[touched.size()];
+            }
+            while (!touched.isEmpty()) {
+                result.changed[result.changedCount++] = touched.pollFirst();
+            }
+        } else {
+            result.base = null;
+            result.changed = null;
+            result.changedCount = 0;
+        }
+        return result;
+    }
+
+    // Compiled on first use by whichever search gets here first; the rest wait for it.
+    synchronized GridGraph graph() {
+        if (graph == null) {
+            if (base != null) {
+                graph = patch();
+            }
+            if (graph == null) {
+                graph = compile();
+            }
+            base = null;
+            changed = null;
+        }
+        return graph;
+    }
+
+    private GridGraph patch() {
+        int[] slots = new int[changedCount];
+        int[] costs = new int[changedCount];
+        int count = 0;
+        for (int i = 0; i < changedCount; i++) {
+            int cell = changed[i] / 4;
+            int dir = changed[i] % 4;
+            int cost = roadCost(cell, dir);
+            if ((cost > 0) != (base.roadCost(cell, dir) > 0)) {
+                return null;
+            }
+            if (cost > 0) {
+                slots[count] = changed[i];
+                costs[count++] = cost;
+            }
+        }
+        return base.withCosts(slots, costs, count);
+    }
+
+    private GridGraph compile() {
+        GridGraph.Builder builder = new GridGraph.Builder(m, n);
+        for (int i = 0; i < tunnels.length; i += 4) {
+            builder.tunnel(tunnels[i], tunnels[i + 1], tunnels[i + 2], tunnels[i + 3]);
+        }
+        for (int tile = 0; tile < tiles.length; tile++) {
+            int[] entries = tiles[tile];
+            if (entries == null) {
+                continue;
+            }
+            for (int slot = 0; slot < entries.length; slot++) {
+                if (entries[slot] != UNSET) {
+                    builder.road(tile * TILE_CELLS * 4 + slot, entries[slot]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    SearchTree tree(int storeCell, Supplier<SearchTree> search) {
+        return trees.get(storeCell, search);
+    }
+
+    // Same rule as GridGraph.Builder: the road's own entry, else the way back's, else 1.
+    private int roadCost(int cell, int dir) {
+        int x = cell / n + GridGraph.DX[dir];
+        int y = cell % n + GridGraph.DY[dir];
+        if (!inside(x, y)) {
+            return 0;
+        }
+        int forward = entry(cell * 4 + dir);
+        if (forward != UNSET) {
+            return forward;
+        }
+        int backward = entry((x * n + y) * 4 + (dir ^ 1));
+        return backward != UNSET ? backward : 1;
+    }
+
+    private int entry(int slot) {
+        int[] tile = tiles[slot / (TILE_CELLS * 4)];
+        return tile == null ? UNSET : tile[slot % (TILE_CELLS * 4)];
+    }
+
+    private static int[] emptyTile() {
+        int[] tile = new int[TILE_CELLS * 4];
+        Arrays.fill(tile, UNSET);
+        return tile;
+    }
+
+    private boolean inside(int x, int y) {
+        return x >= 0 && x < m && y >= 0 && y < n;
+    }
+}
@@ -0,0 +1,42 @@
+package code;
+
+import java.util.Arrays;
+
+// Fixed-size memory of the cheapest cost each state was reached at, for IDA* passes. A state space
+// that fits gets one slot per state and loses nothing; a bigger one hashes each state to one slot
+// and a newer state simply takes it over, so a miss only costs a search repeated below a state,
+// never a wrong answer, and the size never grows past MAX_SLOTS.
+final class TranspositionTable {
+
+    static final int MAX_SLOTS = 1 << 16;
+
+    // id in the high half, cost in the low half; -1 when empty.
+    private final long[] entries;
+    private final boolean exact;
+
+    TranspositionTable(int states) {
+        this.entries = new long[Math.min(MAX_SLOTS, Integer.highestOneBit(Math.max(1, states - 1)) << 1)];
+        this.exact = states <= entries.length;
+        clear();
+    }
+
+    void clear() {
+        Arrays.fill(entries, -1L);
+    }
+
+    // True when id was already reached at cost or cheaper; otherwise records cost for id.
+    boolean reachedBefore(int id, int cost) {
+        int slot = (exact ? id : mix(id)) & (entries.length - 1);
+        long entry = entries[slot];
+        if (entry >= 0 && (int) (entry >>> 32) == id && (int) entry <= cost) {
+            return true;
+        }
+        entries[slot] = (long) id << 32 | cost;
+        return false;
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,8 +1,26 @@
 package tests;
 
+import code.Delivery;
+import code.DeliveryPlanner;
+import code.DeliveryQuery;
 import code.DeliverySearch;
+import code.GenericSearch;
+import code.IncrementalPlanner;
+import code.LiveTraffic;
+import code.LruCache;
+import code.Node;
+import code.Successors;
+import code.TrafficSnapshot;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
 
 public class AdvancedTest {
 
@@ -16,6 +34,34 @@ public class AdvancedTest {
 		test3_TunnelShortCut();
 		test4_OptimalityCheck();
 		test5_MultipleStores();
+		test6_CompiledGridReuse();
+		test7_DistanceTableReuse();
+		test8_BidirectionalUniformCost();
+		test9_IterativeDeepeningAStar();
+		test10_JumpPointSearch();
+		test11_ContractionHierarchy();
+		test12_LandmarkHeuristic();
+		test13_PortalHeuristic();
+		test14_ParallelSolve();
+		test15_StoreBranchAndBound();
+		test16_BatchSolve();
+		test17_StreamingSolve();
+		test18_ParserErrorOffset();
+		test19_BinaryGridFile();
+		test20_OffHeapGrid();
+		test21_IncrementalReplan();
+		test22_LiveTrafficVersions();
+		test23_MultiSourceTies();
+		test24_WeightedIdaStar();
+		test25_IncrementalPlannerLargeGrid();
+		test26_EncodedStatesMatchObjectSearch();
+		test27_CompiledRoadCosts();
+		test28_IndexedHeapDecreaseKey();
+		test29_MonotoneIntegerQueues();
+		test30_SuccessorBuffer();
+		test31_NodePool();
+		test32_MultiGoalSweep();
+		test33_MultiSourceSearch();
 	}
 
 	// quick sanity check: store at 0,0, cust at 0,2, uniform cost grid.
@@ -114,6 +160,869 @@ public class AdvancedTest {
 		System.out.println("------------------------------------------");
 	}
 
+	// same grid + traffic twice should hit the compiled-grid cache and answer the same.
+	static void test6_CompiledGridReuse() {
+		System.out.println("Test 6: Compiled Grid Cache Reuse...");
+
+		String state = "6;6;2;2;0,0,5,5;2,3,4,1;1,1,4,4";
+		String traffic = "0,0,0,1,3;0,1,0,2,4;2,2,2,3,0;";
+
+		LruCache<?, ?> cache = DeliverySearch.gridCache();
+		String first = DeliverySearch.solve(state, traffic, "UC", false);
+		long hitsBefore = cache.hits();
+		String second = DeliverySearch.solve(state, traffic, "AS1", false);
+
+		if (cache.hits() == hitsBefore + 1 && first.split(";")[1].equals(second.split(";")[1])) {
+			System.out.println(" [PASS] Second solve reused the compiled grid (" + cache + ").");
+		} else {
+			System.out.println(" [FAIL] Cache not hit or answers differ. Stats: " + cache + ", UC: " + first + ", AS1: " + second);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	// new customers on the same roads should be answered from the cached per-store UC tables.
+	static void test7_DistanceTableReuse() {
+		System.out.println("Test 7: Store Distance Tables Across Customer Sets...");
+
+		String traffic = "0,0,1,0,4;1,0,2,0,4;2,0,3,0,4;0,1,1,1,2;";
+		DeliverySearch.solve("7;7;2;2;0,0,6,6;3,0,5,5;", traffic, "UC", false);
+
+		LruCache<?, ?> tables = DeliverySearch.distanceTableCache();
+		long hitsBefore = tables.hits();
+		String result = DeliverySearch.solve("7;7;2;2;0,0,6,6;1,1,6,2;", traffic, "UC", false);
+		String expected = DeliverySearch.solve("7;7;2;2;0,0,6,6;1,1,6,2;", traffic, "AS1", false);
+
+		if (tables.hits() >= hitsBefore + 2 && costsOf(result).equals(costsOf(expected))) {
+			System.out.println(" [PASS] Reused both store tables: " + result.replace(System.lineSeparator(), " | "));
+		} else {
+			System.out.println(" [FAIL] Tables not reused or wrong costs. Stats: " + tables + ", UC: " + result + ", AS1: " + expected);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test8_BidirectionalUniformCost() {
+		System.out.println("Test 8: Bidirectional UC Meets In The Middle...");
+
+		// Uphill one way only, so the backward half has to use the reverse costs.
+		String state = "30;30;1;1;0,15;29,15;";
+		String traffic = "0,15,1,15,9;1,15,0,15,1;0,15,0,16,9;0,16,0,15,1;";
+		String uc = DeliverySearch.solve(state, traffic, "UC", false);
+		String buc = DeliverySearch.solve(state, traffic, "BUC", false);
+
+		if (costsOf(buc).equals(costsOf(uc)) && expandedOf(buc) < expandedOf(uc)) {
+			System.out.println(" [PASS] Same cost with fewer expansions. UC: " + uc + ", BUC: " + buc);
+		} else {
+			System.out.println(" [FAIL] UC: " + uc + ", BUC: " + buc);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test9_IterativeDeepeningAStar() {
+		System.out.println("Test 9: IDA* Matches A* Costs...");
+
+		String state = "6;6;2;1;0,0;5,5,2,4;1,1,4,4;";
+		String traffic = "0,0,1,0,5;0,0,0,1,3;1,0,1,1,1;2,4,3,4,8;";
+		String astar = DeliverySearch.solve(state, traffic, "AS1", false);
+		String ida1 = DeliverySearch.solve(state, traffic, "IDA1", false);
+		String ida2 = DeliverySearch.solve(state, traffic, "IDA2", false);
+
+		if (costsOf(ida1).equals(costsOf(astar)) && costsOf(ida2).equals(costsOf(astar))) {
+			System.out.println(" [PASS] IDA1: " + ida1.replace(System.lineSeparator(), " | "));
+		} else {
+			System.out.println(" [FAIL] AS1: " + astar + ", IDA1: " + ida1 + ", IDA2: " + ida2);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test10_JumpPointSearch() {
+		System.out.println("Test 10: Jump Point Search Across Open Blocks...");
+
+		// Mostly default traffic, with one blocked road and a pricey one in the way.
+		String state = "40;40;1;1;2,3;35,30;";
+		String traffic = "20,20,21,20,0;20,21,21,21,6;";
+		String astar = DeliverySearch.solve(state, traffic, "AS1", false);
+		String jps = DeliverySearch.solve(state, traffic, "JPS", false);
+
+		if (costsOf(jps).equals(costsOf(astar)) && expandedOf(jps) < expandedOf(astar)) {
+			System.out.println(" [PASS] AS1: " + astar.substring(astar.lastIndexOf(';', astar.lastIndexOf(';') - 1)) + ", JPS: " + jps.substring(jps.lastIndexOf(';', jps.lastIndexOf(';') - 1)));
+		} else {
+			System.out.println(" [FAIL] AS1: " + astar + ", JPS: " + jps);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test11_ContractionHierarchy() {
+		System.out.println("Test 11: Contraction Hierarchy Unpacks To Grid Moves...");
+
+		// Both roads into the far corner are pricey, so the cheapest ride there goes through the tunnel.
+		String state = "12;12;2;1;0,1;11,11,6,3;1,1,11,11;";
+		String traffic = "10,11,11,11,9;11,10,11,11,9;2,3,3,3,0;";
+		String uc = DeliverySearch.solve(state, traffic, "UC", false);
+		String ch = DeliverySearch.solve(state, traffic, "CH", false);
+		String again = DeliverySearch.solve(state, traffic, "CH", false);
+
+		if (costsOf(ch).equals(costsOf(uc)) && ch.contains("tunnel") && ch.equals(again)) {
+			System.out.println(" [PASS] " + ch.replace(System.lineSeparator(), " | "));
+		} else {
+			System.out.println(" [FAIL] UC: " + uc + ", CH: " + ch);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test12_LandmarkHeuristic() {
+		System.out.println("Test 12: Landmark Heuristic Beats Manhattan Under Traffic...");
+
+		// Every road costs 4, so Manhattan underestimates by a factor of four.
+		StringBuilder traffic = new StringBuilder();
+		for (int x = 0; x < 30; x++) {
+			for (int y = 0; y < 30; y++) {
+				traffic.append(x).append(",").append(y).append(",").append(x + 1).append(",").append(y).append(",4;");
+				traffic.append(x).append(",").append(y).append(",").append(x).append(",").append(y + 1).append(",4;");
+			}
+		}
+		String state = "30;30;1;1;2,2;27,25;";
+		String manhattan = DeliverySearch.solve(state, traffic.toString(), "AS1", false);
+		String landmarks = DeliverySearch.solve(state, traffic.toString(), "AS3", false);
+
+		if (costsOf(landmarks).equals(costsOf(manhattan)) && expandedOf(landmarks) < expandedOf(manhattan)) {
+			System.out.println(" [PASS] Expanded AS1: " + expandedOf(manhattan) + ", AS3: " + expandedOf(landmarks));
+		} else {
+			System.out.println(" [FAIL] AS1: " + manhattan + ", AS3: " + landmarks);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test13_PortalHeuristic() {
+		System.out.println("Test 13: Tunnel-Aware Heuristic On A Pricey Grid...");
+
+		// Roads cost 3, tunnels cost their length, so the tunnel is the way across.
+		StringBuilder traffic = new StringBuilder();
+		for (int x = 0; x < 25; x++) {
+			for (int y = 0; y < 25; y++) {
+				traffic.append(x).append(",").append(y).append(",").append(x + 1).append(",").append(y).append(",3;");
+				traffic.append(x).append(",").append(y).append(",").append(x).append(",").append(y + 1).append(",3;");
+			}
+		}
+		String state = "25;25;1;1;0,0;24,22;1,1,12,12;";
+		String manhattan = DeliverySearch.solve(state, traffic.toString(), "AS1", false);
+		String portals = DeliverySearch.solve(state, traffic.toString(), "AS4", false);
+
+		if (costsOf(portals).equals(costsOf(manhattan)) && expandedOf(portals) < expandedOf(manhattan)) {
+			System.out.println(" [PASS] Expanded AS1: " + expandedOf(manhattan) + ", AS4: " + expandedOf(portals));
+		} else {
+			System.out.println(" [FAIL] AS1: " + manhattan + ", AS4: " + portals);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test14_ParallelSolve() {
+		System.out.println("Test 14: Parallel Solve Keeps Order And Answers...");
+
+		String state = "15;15;6;2;0,0,14,14;3,4,10,2,7,7,1,13,12,9,5,11;2,2,11,11;";
+		String traffic = "3,3,3,4,0;6,7,7,7,5;10,10,10,11,9;";
+		boolean same = true;
+		String parallel = "";
+		for (String strategy : new String[] {"UC", "BF", "AS1", "BUC", "JPS"}) {
+			parallel = DeliverySearch.solve(state, traffic, strategy, false, true);
+			same &= parallel.equals(DeliverySearch.solve(state, traffic, strategy, false, false));
+		}
+
+		if (same) {
+			System.out.println(" [PASS] " + parallel.replace(System.lineSeparator(), " | "));
+		} else {
+			System.out.println(" [FAIL] Parallel and sequential answers differ, last: " + parallel);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test15_StoreBranchAndBound() {
+		System.out.println("Test 15: Bounded Store Searches Pick The Same Stores...");
+
+		// Stores 1 and 4 tie for customer 1; the bounded loop tries 4 first but must still report 1.
+		String state = "12;12;3;4;2,2,11,11,0,11,2,5;2,4,9,9,1,10;";
+		String traffic = "2,5,2,4,2;9,10,9,9,2;";
+		String uc = DeliverySearch.solve(state, traffic, "UC", false);
+		String buc = DeliverySearch.solve(state, traffic, "BUC", false);
+		String jps = DeliverySearch.solve(state, traffic, "JPS", false);
+
+		if (storesAndCostsOf(buc).equals(storesAndCostsOf(uc)) && storesAndCostsOf(jps).equals(storesAndCostsOf(uc))) {
+			System.out.println(" [PASS] " + storesAndCostsOf(uc));
+		} else {
+			System.out.println(" [FAIL] UC: " + uc + ", BUC: " + buc + ", JPS: " + jps);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test16_BatchSolve() {
+		System.out.println("Test 16: Batch Queries Match One solve() Per Job...");
+
+		String traffic = "2,5,2,4,2;9,10,9,9,2;3,3,3,4,0;";
+		String[] strategies = {"UC", "AS1", "BF"};
+		List<DeliveryQuery> queries = List.of(
+				new DeliveryQuery(new int[] {2, 2, 11, 11}, new int[] {2, 4, 9, 9}, strategies[0]),
+				new DeliveryQuery(new int[] {0, 11, 2, 5}, new int[] {1, 10, 9, 9, 5, 5}, strategies[1]),
+				new DeliveryQuery(new int[] {6, 6}, new int[] {0, 0}, strategies[2]));
+		String[] states = {
+				"12;12;2;2;2,2,11,11;2,4,9,9;0,0,11,0",
+				"12;12;3;2;0,11,2,5;1,10,9,9,5,5;0,0,11,0",
+				"12;12;1;1;6,6;0,0;0,0,11,0"};
+		List<List<Delivery>> batch = DeliveryPlanner.solveBatch(12, 12, "0,0,11,0", traffic, queries);
+
+		boolean ok = batch.size() == queries.size();
+		String mismatch = "";
+		for (int q = 0; ok && q < states.length; q++) {
+			StringBuilder lines = new StringBuilder();
+			for (Delivery delivery : batch.get(q)) {
+				if (lines.length() > 0) {
+					lines.append(System.lineSeparator());
+				}
+				lines.append(delivery);
+			}
+			String single = DeliverySearch.solve(states[q], traffic, strategies[q], false);
+			if (!lines.toString().equals(single)) {
+				ok = false;
+				mismatch = "batch: " + lines + ", solve: " + single;
+			}
+		}
+
+		if (ok) {
+			System.out.println(" [PASS] " + batch.get(1));
+		} else {
+			System.out.println(" [FAIL] " + mismatch);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test17_StreamingSolve() {
+		System.out.println("Test 17: Streamed Deliveries Arrive One By One...");
+
+		String state = "12;12;3;2;0,11,2,5;1,10,9,9,5,5;0,0,11,0";
+		String traffic = "2,5,2,4,2;9,10,9,9,2;";
+		String whole = DeliveryPlanner.solve(state, traffic, "AS1", false);
+		List<String> streamed = new ArrayList<>();
+		DeliveryPlanner.solve(state, traffic, "AS1", delivery -> streamed.add(delivery.toString()));
+
+		if (String.join(System.lineSeparator(), streamed).equals(whole) && streamed.size() == 3) {
+			System.out.println(" [PASS] " + streamed.size() + " callbacks, same lines as solve().");
+		} else {
+			System.out.println(" [FAIL] Streamed: " + streamed + ", solve: " + whole);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test18_ParserErrorOffset() {
+		System.out.println("Test 18: Malformed Traffic Reports Where It Broke...");
+
+		String state = "5;5;1;1;0,0;4,4;";
+		String message = "";
+		try {
+			DeliverySearch.solve(state, "0,0,0,1,1;0,1,0,x2,2;", "UC", false);
+		} catch (IllegalArgumentException e) {
+			message = e.getMessage();
+		}
+
+		if (message.contains("offset 16")) {
+			System.out.println(" [PASS] " + message);
+		} else {
+			System.out.println(" [FAIL] Expected offset 16, got: " + message);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test19_BinaryGridFile() {
+		System.out.println("Test 19: Binary Grid File Plans Like The Text...");
+
+		// One road too pricey for a cost byte, one blocked road and a tunnel.
+		String state = "8;8;2;2;0,0,7,7;3,5,6,1;1,1,6,6";
+		String traffic = "0,0,0,1,300;0,0,1,0,2;3,4,3,5,0;5,1,6,1,9;";
+		try {
+			Path file = Files.createTempFile("grid", ".bin");
+			DeliveryPlanner.convert(state, traffic, file);
+			String text = DeliveryPlanner.solve(state, traffic, "UC", false);
+			String binary = DeliveryPlanner.solve(file, "UC", false);
+			Files.delete(file);
+
+			if (binary.equals(text)) {
+				System.out.println(" [PASS] " + binary.replace(System.lineSeparator(), " | "));
+			} else {
+				System.out.println(" [FAIL] Text: " + text + ", file: " + binary);
+			}
+		} catch (IOException e) {
+			System.out.println(" [FAIL] " + e);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test20_OffHeapGrid() {
+		System.out.println("Test 20: Off-Heap Roads Plan Like The Heap Graph...");
+
+		String state = "8;8;2;2;0,0,7,7;3,5,6,1;1,1,6,6";
+		String traffic = "0,0,0,1,300;0,0,1,0,2;3,4,3,5,0;5,1,6,1,9;6,6,6,5,4;";
+		try {
+			Path file = Files.createTempFile("grid", ".bin");
+			DeliveryPlanner.convert(state, traffic, file);
+			String failed = "";
+			for (String strategy : new String[] {"UC", "AS1", "BUC", "JPS"}) {
+				String heap = DeliverySearch.solve(file, strategy, false, false);
+				String offHeap = DeliverySearch.solve(file, strategy, false, true);
+				if (!offHeap.equals(heap)) {
+					failed += strategy + " heap: " + heap + ", off-heap: " + offHeap + " ";
+				}
+			}
+			Files.delete(file);
+
+			if (failed.isEmpty()) {
+				System.out.println(" [PASS] UC, AS1, BUC and JPS agree.");
+			} else {
+				System.out.println(" [FAIL] " + failed);
+			}
+		} catch (IOException e) {
+			System.out.println(" [FAIL] " + e);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test21_IncrementalReplan() {
+		System.out.println("Test 21: Traffic Updates Repair The Old Routes...");
+
+		String state = "20;20;2;2;19,19,0,19;0,0,10,10;";
+		String traffic = "";
+		IncrementalPlanner planner = DeliveryPlanner.incremental(state, traffic);
+		planner.plans();
+
+		// Jam both roads out of the first customer, then clear one again.
+		String failed = "";
+		int repaired = 0;
+		int fresh = 0;
+		for (String delta : new String[] {"0,0,0,1,50;0,0,1,0,50;", "0,0,1,0,1;"}) {
+			traffic += delta;
+			String expected = DeliveryPlanner.solve(state, traffic, "UC", false);
+			StringBuilder actual = new StringBuilder();
+			for (Delivery delivery : planner.update(delta)) {
+				if (actual.length() > 0) {
+					actual.append(System.lineSeparator());
+				}
+				actual.append(delivery);
+				repaired += delivery.expanded;
+			}
+			for (String line : expected.split(System.lineSeparator())) {
+				fresh += expandedOf(line);
+			}
+			if (!storesAndCostsOf(actual.toString()).equals(storesAndCostsOf(expected))) {
+				failed += "after " + delta + " got " + actual + ", UC: " + expected + " ";
+			}
+		}
+
+		if (failed.isEmpty() && repaired < fresh) {
+			System.out.println(" [PASS] Same stores and costs as UC, " + repaired + " cells repaired vs " + fresh + " searched.");
+		} else {
+			System.out.println(" [FAIL] " + failed + "repaired " + repaired + ", fresh " + fresh);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test22_LiveTrafficVersions() {
+		System.out.println("Test 22: Searches Keep The Traffic Version They Pinned...");
+
+		String state = "10;10;1;1;0,0;9,9;";
+		DeliveryQuery query = new DeliveryQuery(new int[] {0, 0}, new int[] {9, 9}, "UC");
+		LiveTraffic live = DeliveryPlanner.live(10, 10, "", "");
+		TrafficSnapshot pinned = live.current();
+		String before = pinned.solve(query).get(0).toString();
+
+		// Every road out of the store gets expensive while the pinned search is "still running".
+		String jam = "0,0,0,1,20;0,0,1,0,20;";
+		TrafficSnapshot published = live.publish(jam);
+		String old = pinned.solve(query).get(0).toString();
+		String now = live.solve(query).get(0).toString();
+
+		if (old.equals(before) && now.equals(DeliveryPlanner.solve(state, jam, "UC", false))
+				&& pinned.version() == 0 && published.version() == 1 && live.current() == published) {
+			System.out.println(" [PASS] v0: " + old + " | v1: " + now);
+		} else {
+			System.out.println(" [FAIL] Before: " + before + ", pinned after publish: " + old + ", current: " + now);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test23_MultiSourceTies() {
+		System.out.println("Test 23: Tied Stores Go To The First Listed One In GR/AS...");
+
+		// Both stores are one step from the customer; S1 must win like it does under UC.
+		String failed = "";
+		String tie = "3;3;1;2;0,1,2,1;1,1;";
+		String expected = "(S1,D1):right;1;1";
+		for (String strategy : new String[] {"GR1", "AS1"}) {
+			String result = DeliveryPlanner.solve(tie, "", strategy, false);
+			if (!result.equals(expected)) {
+				failed += strategy + ": " + result + " ";
+			}
+		}
+
+		// Three stores the same distance from the first customer.
+		String state = "9;9;2;3;0,4,8,4,4,0;4,4,2,0;";
+		String traffic = "3,4,4,4,1;0,4,0,3,2;";
+		String uc = storesAndCostsOf(DeliveryPlanner.solve(state, traffic, "UC", false));
+		for (String strategy : new String[] {"GR1", "GR2", "GR3", "AS1", "AS2", "AS3", "AS4"}) {
+			String result = storesAndCostsOf(DeliveryPlanner.solve(state, traffic, strategy, false));
+			if (!result.equals(uc)) {
+				failed += strategy + ": " + result + "vs UC " + uc;
+			}
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] " + expected + " | " + uc);
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test24_WeightedIdaStar() {
+		System.out.println("Test 24: IDA* Stays Fast On Wide Traffic Costs...");
+
+		// Every road gets its own cost between 1 and 40, so almost every f value is distinct.
+		int m = 14;
+		int n = 13;
+		StringBuilder traffic = new StringBuilder();
+		for (int x = 0; x < m; x++) {
+			for (int y = 0; y < n; y++) {
+				if (x + 1 < m) {
+					traffic.append(x + "," + y + "," + (x + 1) + "," + y + "," + ((x * 7 + y * 13) % 40 + 1) + ";");
+				}
+				if (y + 1 < n) {
+					traffic.append(x + "," + y + "," + x + "," + (y + 1) + "," + ((x * 11 + y * 5) % 40 + 1) + ";");
+				}
+			}
+		}
+		String state = m + ";" + n + ";2;2;0,0,13,0;13,12,6,12;";
+		String astar = DeliverySearch.solve(state, traffic.toString(), "AS1", false);
+		long start = System.nanoTime();
+		String ida1 = DeliverySearch.solve(state, traffic.toString(), "IDA1", false);
+		String ida2 = DeliverySearch.solve(state, traffic.toString(), "IDA2", false);
+		long millis = (System.nanoTime() - start) / 1_000_000;
+
+		if (storesAndCostsOf(ida1).equals(storesAndCostsOf(astar)) && storesAndCostsOf(ida2).equals(storesAndCostsOf(astar)) && millis < 2000) {
+			System.out.println(" [PASS] " + storesAndCostsOf(ida1) + "in " + millis + " ms");
+		} else {
+			System.out.println(" [FAIL] AS1: " + astar + ", IDA1: " + ida1 + ", IDA2: " + ida2 + ", " + millis + " ms");
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test25_IncrementalPlannerLargeGrid() {
+		System.out.println("Test 25: Incremental Routes Only Pay For The Cells They Touch...");
+
+		// 4M cells and 200 customers: grid-sized arrays per customer would need close to 20 GB.
+		int size = 2000;
+		StringBuilder customers = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			int x = i % 2 == 0 ? i % 10 : size - 1 - i % 10;
+			int y = i % 2 == 0 ? i / 10 : size - 1 - i / 10;
+			customers.append(x + "," + y + ",");
+		}
+		String state = size + ";" + size + ";200;2;0,0," + (size - 1) + "," + (size - 1) + ";" + customers + ";";
+		IncrementalPlanner planner = DeliveryPlanner.incremental(state, "");
+		List<Delivery> before = planner.plans();
+		// A jam in front of the first store sends its customers the long way round.
+		String jam = "0,0,0,1,30;0,0,1,0,30;";
+		List<Delivery> after = planner.update(jam);
+		String expected = DeliveryPlanner.solve(state, jam, "AS1", false);
+
+		StringBuilder actual = new StringBuilder();
+		for (Delivery delivery : after) {
+			if (actual.length() > 0) {
+				actual.append(System.lineSeparator());
+			}
+			actual.append(delivery);
+		}
+		if (before.size() == 200 && storesAndCostsOf(actual.toString()).equals(storesAndCostsOf(expected))) {
+			System.out.println(" [PASS] 200 routes repaired on a " + size + "x" + size + " grid, same costs as AS1.");
+		} else {
+			System.out.println(" [FAIL] Incremental: " + actual + ", AS1: " + expected);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test26_EncodedStatesMatchObjectSearch() {
+		System.out.println("Test 26: BitSet Closed Set Agrees With The HashSet One...");
+
+		// Same graph searched with and without int ids: BF/DF must match to the expanded count, UC on cost.
+		String failed = "";
+		for (int seed = 0; seed < 20; seed++) {
+			Digraph encoded = Digraph.random(seed, 300, 3, 9, true);
+			Digraph plain = Digraph.random(seed, 300, 3, 9, false);
+			encoded.goal = plain.goal = seed * 37 % 300;
+			for (String strategy : new String[] {"BF", "DF", "UC"}) {
+				String fast = encoded.search(0, strategy);
+				String slow = plain.search(0, strategy);
+				boolean same = "UC".equals(strategy) ? fast.split(";")[1].equals(slow.split(";")[1]) : fast.equals(slow);
+				if (!same) {
+					failed += seed + "/" + strategy + ": " + fast + " vs " + slow + " ";
+				}
+			}
+		}
+
+		// Ids only cover the grid: a customer off it is NoPath, a store off it serves nobody and a
+		// tunnel off it is dropped, while everyone else is answered under their usual numbers.
+		String offGrid = "";
+		for (String strategy : new String[] {"BF", "UC", "AS1"}) {
+			offGrid = DeliverySearch.solve("3;3;3;3;0,0,7,7,2,2;0,2,5,5,2,1;9,9,1,1", "", strategy, false);
+			String[] lines = offGrid.split(System.lineSeparator());
+			if (lines.length != 3 || !lines[0].startsWith("(S1,D1):up,up;2;") || !lines[1].equals("(S?,D2):NoPath;0;0")
+					|| !lines[2].startsWith("(S3,D3):down;1;")) {
+				failed += strategy + " off-grid: " + offGrid + " ";
+			}
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] 20 graphs agree on BF/DF/UC; off the grid: " + storesAndCostsOf(offGrid));
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test27_CompiledRoadCosts() {
+		System.out.println("Test 27: Compiled Roads Keep The Traffic Lookup Rules...");
+
+		// One-column corridors, so each answer has a single route. Own entry 5 beats the way back's 2,
+		// the next road only has the way back's 7, the last one has nothing and costs 1.
+		String failed = "";
+		String priced = DeliverySearch.solve("1;4;1;1;0,0;0,3;", "0,0,0,1,5;0,1,0,0,2;0,2,0,1,7;", "UC", false);
+		if (!priced.startsWith("(S1,D1):up,up,up;13;")) {
+			failed += "costs: " + priced + " ";
+		}
+		// A 0 on the road itself blocks it, even though the way back is open.
+		String blocked = DeliverySearch.solve("1;3;1;1;0,0;0,2;", "0,1,0,2,0;0,2,0,1,4;", "BF", false);
+		if (!blocked.contains("NoPath")) {
+			failed += "blocked: " + blocked + " ";
+		}
+		// The tunnel edge gets around the block; a record for cells off the grid is ignored.
+		for (String strategy : new String[] {"BF", "UC", "AS1"}) {
+			String tunnel = DeliverySearch.solve("1;5;1;1;0,0;0,4;0,1,0,3", "0,1,0,2,0;9,9,9,8,1;", strategy, false);
+			if (!tunnel.startsWith("(S1,D1):up,tunnel,up;4;")) {
+				failed += strategy + " tunnel: " + tunnel + " ";
+			}
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] " + priced);
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test28_IndexedHeapDecreaseKey() {
+		System.out.println("Test 28: Indexed Heap Lowers Queued Keys In Place...");
+
+		// 0 -> 1 costs 10 but 0 -> 2 -> 1 costs 2: state 1 is queued at 10, then lowered and re-parented.
+		String failed = "";
+		Digraph small = new Digraph(new int[][] {{1, 2}, {}, {1}}, new int[][] {{10, 1}, {}, {1}}, true);
+		small.goal = 1;
+		String lowered = small.search(0, "UC");
+		if (!lowered.equals("e1,e0;2;2")) {
+			failed += "small: " + lowered + " ";
+		}
+
+		// No integral cost bound is reported, so UC and AS run on the heap; java.util.PriorityQueue
+		// gives the reference costs and every returned plan has to drive for exactly its cost.
+		for (int seed = 0; seed < 30; seed++) {
+			Digraph graph = Digraph.random(seed, 400, 4, 20, true);
+			graph.goal = seed * 53 % 400;
+			long expected = graph.distances(0, false)[graph.goal];
+			String uc = graph.search(0, "UC");
+			graph.useHalfDistances();
+			String astar = graph.search(0, "AS1");
+			for (String result : new String[] {uc, astar}) {
+				long cost = result.startsWith("NoPath") ? -1 : Long.parseLong(result.split(";")[1]);
+				if (cost != expected || (cost >= 0 && graph.replay(0, graph.goal, result) != cost)) {
+					failed += seed + ": " + result + " vs " + expected + " ";
+				}
+			}
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] " + lowered + "; 30 graphs match PriorityQueue on UC and AS.");
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test29_MonotoneIntegerQueues() {
+		System.out.println("Test 29: Bucket Queue And Radix Heap Pop In Cost Order...");
+
+		// Costs up to 20 fit Dial's buckets; up to 200000 they are past the bucket span and go radix.
+		String failed = "";
+		List<Integer> everything = new ArrayList<>();
+		for (int state = 0; state < 400; state++) {
+			everything.add(state);
+		}
+		for (int maxCost : new int[] {20, 200_000}) {
+			for (int seed = 0; seed < 15; seed++) {
+				Digraph graph = Digraph.random(seed, 400, 4, maxCost, true);
+				graph.reportedMaxCost = maxCost;
+				long[] expected = graph.distances(0, false);
+				// Sweeping every state settles each one once; in settle (expanded) order costs never drop.
+				String[] settled = graph.searchAll(0, everything, "UC");
+				long[] byExpanded = new long[400];
+				Arrays.fill(byExpanded, -1);
+				for (int state = 0; state < 400; state++) {
+					long cost = settled[state].startsWith("NoPath") ? -1 : Long.parseLong(settled[state].split(";")[1]);
+					if (cost != expected[state]) {
+						failed += maxCost + "/" + seed + " state " + state + ": " + settled[state] + " vs " + expected[state] + " ";
+					} else if (cost >= 0) {
+						byExpanded[expandedOf(settled[state])] = cost;
+					}
+				}
+				long last = 0;
+				for (long cost : byExpanded) {
+					if (cost >= 0 && cost < last) {
+						failed += maxCost + "/" + seed + " popped " + cost + " after " + last + " ";
+					}
+					last = Math.max(last, cost);
+				}
+				graph.goal = seed * 53 % 400;
+				graph.useHalfDistances();
+				String astar = graph.search(0, "AS1");
+				long cost = astar.startsWith("NoPath") ? -1 : Long.parseLong(astar.split(";")[1]);
+				if (cost != expected[graph.goal]) {
+					failed += maxCost + "/" + seed + " AS1: " + astar + " vs " + expected[graph.goal] + " ";
+				}
+			}
+
+			// h drops from 5 to 0 along a cost-1 edge, so f goes below the last popped key: refused.
+			Digraph chain = new Digraph(new int[][] {{1}, {2}, {}}, new int[][] {{1}, {1}, {}}, true);
+			chain.goal = 2;
+			chain.reportedMaxCost = maxCost;
+			chain.integralHeuristic = true;
+			chain.heuristic = new double[] {0, 5, 0};
+			try {
+				failed += maxCost + " inconsistent h accepted: " + chain.search(0, "AS1") + " ";
+			} catch (IllegalStateException e) {
+				// expected; the queue must still be usable afterwards
+			}
+			chain.heuristic = new double[] {2, 1, 0};
+			String recovered = chain.search(0, "AS1");
+			if (!recovered.equals("e0,e0;2;2")) {
+				failed += maxCost + " after refusal: " + recovered + " ";
+			}
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] Both queues match PriorityQueue, pop monotonically and refuse an inconsistent h.");
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test30_SuccessorBuffer() {
+		System.out.println("Test 30: Successor Buffer Grows, Arrives Empty And Keeps Order...");
+
+		// A hub with 100 edges outgrows the buffer's first arrays; the rest have 2 each.
+		String failed = "";
+		for (int seed = 0; seed < 10; seed++) {
+			Digraph encoded = Digraph.random(seed, 500, 2, 9, true);
+			Digraph plain = Digraph.random(seed, 500, 2, 9, false);
+			Digraph other = Digraph.random(seed + 100, 500, 2, 9, true);
+			Digraph hub = Digraph.random(seed + 200, 1, 100, 9, false);
+			for (int i = 0; i < 100; i++) {
+				hub.targets[0][i] = (i * 7 + seed) % 500;
+			}
+			encoded.targets[0] = plain.targets[0] = hub.targets[0];
+			encoded.costs[0] = plain.costs[0] = hub.costs[0];
+			encoded.goal = plain.goal = other.goal = 499 - seed;
+			for (String strategy : new String[] {"BF", "DF", "UC"}) {
+				String fast = encoded.search(0, strategy);
+				String slow = plain.search(0, strategy);
+				boolean same = "UC".equals(strategy) ? fast.split(";")[1].equals(slow.split(";")[1]) : fast.equals(slow);
+				// Another domain of the same size in between reuses the same thread's buffers.
+				other.search(0, strategy);
+				if (!same || !encoded.search(0, strategy).equals(fast)) {
+					failed += seed + "/" + strategy + ": " + fast + " vs " + slow + " ";
+				}
+			}
+			if (encoded.dirtyBuffer || other.dirtyBuffer) {
+				failed += seed + ": buffer handed over with stale entries ";
+			}
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] 10 hub graphs agree with the Object search on BF/DF/UC, before and after reuse.");
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test31_NodePool() {
+		System.out.println("Test 31: Node Pool Grows, Resets And Rebuilds Plans...");
+
+		// A 150000-state chain needs more nodes than the pool starts with, and one very deep plan.
+		String failed = "";
+		int length = 150_000;
+		int[][] next = new int[length][];
+		int[][] cost = new int[length][];
+		for (int state = 0; state < length; state++) {
+			next[state] = state + 1 < length ? new int[] {state + 1} : new int[0];
+			cost[state] = state + 1 < length ? new int[] {state % 3 + 1} : new int[0];
+		}
+		Digraph chain = new Digraph(next, cost, true);
+		Digraph linked = new Digraph(next, cost, false);
+		chain.goal = linked.goal = length - 1;
+		String deep = chain.search(0, "BF");
+		if (!deep.equals(linked.search(0, "BF"))) {
+			failed += "chain differs from linked Nodes ";
+		}
+
+		// Each search starts from an empty pool: A, B, then A again gives A's answer, and plans that
+		// were re-parented by decrease-key still drive for their cost.
+		for (int seed = 0; seed < 10; seed++) {
+			Digraph graph = Digraph.random(seed, 400, 4, 20, true);
+			graph.goal = seed * 53 % 400;
+			String first = graph.search(0, "UC");
+			graph.goal = 399 - graph.goal;
+			graph.search(0, "UC");
+			graph.goal = 399 - graph.goal;
+			String again = graph.search(0, "UC");
+			if (!again.equals(first) || (!first.startsWith("NoPath") && graph.replay(0, graph.goal, first) != Long.parseLong(first.split(";")[1]))) {
+				failed += seed + ": " + first + " then " + again + " ";
+			}
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] " + (length - 1) + "-step plan, cost " + deep.split(";")[1] + "; pool reuse gives the same plans.");
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test32_MultiGoalSweep() {
+		System.out.println("Test 32: One Sweep Answers Every Goal Like Its Own Search...");
+
+		// Goals include a repeat, the start itself and a state nothing leads to.
+		String failed = "";
+		for (int seed = 0; seed < 10; seed++) {
+			Digraph graph = Digraph.random(seed, 300, 3, 9, true);
+			for (int[] row : graph.targets) {
+				for (int i = 0; i < row.length; i++) {
+					row[i] = row[i] == 299 ? 298 : row[i];
+				}
+			}
+			List<Integer> goals = new ArrayList<>(List.of(seed * 31 % 299, 0, 299, 150));
+			goals.add(goals.get(0));
+			for (String strategy : new String[] {"BF", "DF", "UC"}) {
+				String[] swept = graph.searchAll(0, goals, strategy);
+				for (int i = 0; i < goals.size(); i++) {
+					graph.goal = goals.get(i);
+					String alone = graph.search(0, strategy);
+					if (!swept[i].equals(alone)) {
+						failed += seed + "/" + strategy + " goal " + goals.get(i) + ": " + swept[i] + " vs " + alone + " ";
+					}
+				}
+			}
+		}
+		// Heuristics aim at one goal, so a sweep refuses them.
+		String refused = "";
+		try {
+			Digraph.random(0, 10, 2, 9, true).searchAll(0, List.of(1, 2), "AS1");
+		} catch (UnsupportedOperationException e) {
+			refused = e.getMessage();
+		}
+		if (refused.isEmpty()) {
+			failed += "AS1 sweep accepted ";
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] 10 graphs x BF/DF/UC match per-goal searches; " + refused);
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	static void test33_MultiSourceSearch() {
+		System.out.println("Test 33: Multi-Source Search Finds The Cheapest Source...");
+
+		// Costs 1-3 leave plenty of ties between sources. The result has to cost what the best source
+		// costs under PriorityQueue Dijkstra, name one of the sources that cost it and drive from there.
+		String failed = "";
+		for (int seed = 0; seed < 20; seed++) {
+			Digraph graph = Digraph.random(seed, 300, 3, 3, true);
+			graph.goal = seed * 41 % 300;
+			List<Integer> sources = List.of(seed % 300, 17, 101, 202, 299);
+			long[] toGoal = graph.distances(graph.goal, true);
+			long best = -1;
+			for (int source : sources) {
+				if (toGoal[source] >= 0 && (best < 0 || toGoal[source] < best)) {
+					best = toGoal[source];
+				}
+			}
+			for (String strategy : new String[] {"UC", "AS1"}) {
+				if ("AS1".equals(strategy)) {
+					graph.useHalfDistances();
+				}
+				GenericSearch.SourcedResult result = graph.searchFromAny(sources, strategy);
+				long cost = result.source < 0 ? -1 : Long.parseLong(result.result.split(";")[1]);
+				if (cost != best || (cost >= 0 && (toGoal[sources.get(result.source)] != best
+						|| graph.replay(sources.get(result.source), graph.goal, result.result) != best))) {
+					failed += seed + "/" + strategy + ": source " + result.source + " " + result.result + " vs " + best + " ";
+				}
+			}
+		}
+
+		// On the grid, tied stores go to the first listed one: GR/AS must name the same store as UC.
+		Random random = new Random(8);
+		for (int round = 0; round < 30; round++) {
+			StringBuilder cells = new StringBuilder();
+			for (int i = 0; i < 7; i++) {
+				cells.append(random.nextInt(8)).append(",").append(random.nextInt(8)).append(",");
+			}
+			String[] coords = cells.toString().split(",");
+			String stores = String.join(",", Arrays.copyOfRange(coords, 0, 8));
+			String customers = String.join(",", Arrays.copyOfRange(coords, 8, 14));
+			String state = "8;8;3;4;" + stores + ";" + customers + ";";
+			String uc = storesAndCostsOf(DeliveryPlanner.solve(state, "", "UC", false));
+			for (String strategy : new String[] {"GR1", "GR2", "AS1", "AS2"}) {
+				String result = storesAndCostsOf(DeliveryPlanner.solve(state, "", strategy, false));
+				if (!result.equals(uc)) {
+					failed += state + " " + strategy + ": " + result + "vs UC " + uc;
+				}
+			}
+		}
+
+		if (failed.isEmpty()) {
+			System.out.println(" [PASS] 20 graphs match the best source; 30 tied grids pick UC's stores.");
+		} else {
+			System.out.println(" [FAIL] " + failed);
+		}
+		System.out.println("------------------------------------------");
+	}
+
+	private static String storesAndCostsOf(String result) {
+		StringBuilder summary = new StringBuilder();
+		for (String line : result.split(System.lineSeparator())) {
+			summary.append(line, 0, line.indexOf(':')).append(line.split(";")[1]).append(" ");
+		}
+		return summary.toString();
+	}
+
+	private static int expandedOf(String result) {
+		return Integer.parseInt(result.substring(result.lastIndexOf(';') + 1).trim());
+	}
+
+	private static String costsOf(String result) {
+		StringBuilder costs = new StringBuilder();
+		for (String line : result.split(System.lineSeparator())) {
+			costs.append(line.split(";")[1]).append(" ");
+		}
+		return costs.toString();
+	}
+
 	// dump the path coordinates for eyeballing; sorry for the messy loops.
 	private static void visualizePath(String stateStr, String resultStr) {
 		System.out.println(" Path Coordinates:");
@@ -176,5 +1085,162 @@ public class AdvancedTest {
 			}
 		}
 	}
-}
 
+	// Weighted digraph over ids 0..size-1 for driving GenericSearch directly; the i-th edge out of a
+	// state is action "e" + i. Built from the same seed with and without int ids, it is the same
+	// graph either way, so the encoded search can be held against the Object one.
+	private static final class Digraph extends GenericSearch {
+		final int[][] targets;
+		final int[][] costs;
+		final boolean encoded;
+		int goal;
+		// Optional extras: a heuristic (infinite = goal unreachable), the largest edge cost the
+		// search is told about (-1 keeps UC/AS on the comparison heap) and whether h is integral.
+		double[] heuristic;
+		int reportedMaxCost = -1;
+		boolean integralHeuristic;
+		// Set if expandEncoded() is ever handed a buffer that still holds entries.
+		boolean dirtyBuffer;
+
+		Digraph(int[][] targets, int[][] costs, boolean encoded) {
+			this.targets = targets;
+			this.costs = costs;
+			this.encoded = encoded;
+		}
+
+		static Digraph random(long seed, int size, int degree, int maxCost, boolean encoded) {
+			Random random = new Random(seed);
+			int[][] targets = new int[size][degree];
+			int[][] costs = new int[size][degree];
+			for (int state = 0; state < size; state++) {
+				for (int i = 0; i < degree; i++) {
+					targets[state][i] = random.nextInt(size);
+					costs[state][i] = 1 + random.nextInt(maxCost);
+				}
+			}
+			return new Digraph(targets, costs, encoded);
+		}
+
+		@Override
+		public boolean isGoal(Object state) {
+			return (Integer) state == goal;
+		}
+
+		@Override
+		public List<Node> expand(Node node) {
+			int state = (Integer) node.state;
+			List<Node> children = new ArrayList<>();
+			for (int i = 0; i < targets[state].length; i++) {
+				children.add(new Node(targets[state][i], node, "e" + i, node.depth + 1, node.pathCost + costs[state][i], 0));
+			}
+			return children;
+		}
+
+		@Override
+		public double getHeuristic(Object state) {
+			return heuristic == null ? 0 : heuristic[(Integer) state];
+		}
+
+		@Override
+		protected int stateCount() {
+			return encoded ? targets.length : 0;
+		}
+
+		@Override
+		protected int encode(Object state) {
+			return (Integer) state;
+		}
+
+		@Override
+		protected void expandEncoded(int state, Successors out) {
+			dirtyBuffer |= out.size() != 0;
+			for (int i = 0; i < targets[state].length; i++) {
+				out.add(targets[state][i], costs[state][i], (byte) i);
+			}
+		}
+
+		@Override
+		protected String operatorName(byte action) {
+			return "e" + action;
+		}
+
+		@Override
+		protected boolean isEncodedGoal(int state) {
+			return state == goal;
+		}
+
+		@Override
+		protected double encodedHeuristic(int state) {
+			return heuristic == null ? 0 : heuristic[state];
+		}
+
+		@Override
+		protected int maxEdgeCost() {
+			return reportedMaxCost;
+		}
+
+		@Override
+		protected boolean hasIntegralHeuristic() {
+			return integralHeuristic;
+		}
+
+		// Half the true distance to the goal: admissible, consistent and integral.
+		void useHalfDistances() {
+			long[] toGoal = distances(goal, true);
+			heuristic = new double[targets.length];
+			for (int state = 0; state < targets.length; state++) {
+				heuristic[state] = toGoal[state] < 0 ? Double.POSITIVE_INFINITY : toGoal[state] / 2;
+			}
+			integralHeuristic = true;
+		}
+
+		// Cost of driving result's plan from start, or -1 when it does not end at end.
+		long replay(int start, int end, String result) {
+			String plan = result.split(";")[0];
+			int state = start;
+			long cost = 0;
+			for (String step : plan.isEmpty() ? new String[0] : plan.split(",")) {
+				int i = Integer.parseInt(step.substring(1));
+				cost += costs[state][i];
+				state = targets[state][i];
+			}
+			return state == end ? cost : -1;
+		}
+
+		// Cheapest cost from source to every state (or, reversed, from every state to source), -1 when
+		// there is none: textbook Dijkstra on java.util.PriorityQueue with stale entries skipped.
+		long[] distances(int source, boolean reversed) {
+			List<List<int[]>> edges = new ArrayList<>();
+			for (int state = 0; state < targets.length; state++) {
+				edges.add(new ArrayList<>());
+			}
+			for (int state = 0; state < targets.length; state++) {
+				for (int i = 0; i < targets[state].length; i++) {
+					if (reversed) {
+						edges.get(targets[state][i]).add(new int[] {state, costs[state][i]});
+					} else {
+						edges.get(state).add(new int[] {targets[state][i], costs[state][i]});
+					}
+				}
+			}
+			long[] distance = new long[targets.length];
+			Arrays.fill(distance, -1);
+			PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+			queue.add(new long[] {0, source});
+			while (!queue.isEmpty()) {
+				long[] top = queue.poll();
+				int state = (int) top[1];
+				if (distance[state] >= 0) {
+					continue;
+				}
+				distance[state] = top[0];
+				for (int[] edge : edges.get(state)) {
+					if (distance[edge[0]] < 0) {
+						queue.add(new long[] {top[0] + edge[1], edge[0]});
+					}
+				}
+			}
+			return distance;
+		}
+	}
+}